@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.germainz.dynamicalarmicon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of laying out a clock for new bounds, as done by ClockDrawable.onBoundsChange(…), and of the
+ * per-draw angle math.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ClockGeometryBenchmark {
+    @Param({"0", "1"})
+    public int style;
+
+    private final ClockGeometry mGeometry = new ClockGeometry();
+    private int mMinute;
+
+    @Benchmark
+    public float layout() {
+        ClockGeometry geometry = mGeometry;
+        geometry.set(style, false, 60, 60);
+        // Everything ClockDrawable reads to build its outlines.
+        float sum = geometry.getCenterX() + geometry.getCenterY() + geometry.getRadius()
+                + geometry.getCircleStrokeWidth() + geometry.getDotRadius() + geometry.getHandStrokeWidth()
+                + geometry.getHourHandLength() + geometry.getMinuteHandLength() + geometry.getBellRadius()
+                + geometry.getBellStrokeWidth() + geometry.getBellSweepAngle();
+        for (int i = 0; i < geometry.getBellCount(); i++)
+            sum += geometry.getBellStartAngle(i);
+        if (geometry.hasLegs()) {
+            for (int side = -1; side <= 1; side += 2)
+                sum += geometry.getLegStartX(side) + geometry.getLegEndX(side);
+            sum += geometry.getLegStartY() + geometry.getLegEndY() + geometry.getLegStrokeWidth();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int angles() {
+        // Walks through every face so the results can't be folded.
+        int minute = mMinute = (mMinute + 1) % (12 * 60);
+        return ClockGeometry.getHourAngle(minute / 60, minute % 60) + ClockGeometry.getMinuteAngle(minute % 60);
+    }
+}
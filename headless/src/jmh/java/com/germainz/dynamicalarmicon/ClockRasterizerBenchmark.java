@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.germainz.dynamicalarmicon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Faces rendered per second, at the 18 dp status bar icon size of xxhdpi screens and at 192 px. Each
+ * op renders a different minute, like an atlas filling its slots as the alarm time changes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ClockRasterizerBenchmark {
+    @Param({"0", "1"})
+    public int style;
+    @Param({"54", "192"})
+    public int size;
+
+    private final ClockRasterizer mRasterizer = new ClockRasterizer(4);
+    private int[] mPixels;
+    private int mMinute;
+
+    @Benchmark
+    public int[] render() {
+        int minute = mMinute;
+        mMinute = (minute + 1) % (24 * 60);
+        mPixels = mRasterizer.render(style, false, 0xFFFFFFFF, minute / 60, minute % 60, size, size, mPixels);
+        return mPixels;
+    }
+}
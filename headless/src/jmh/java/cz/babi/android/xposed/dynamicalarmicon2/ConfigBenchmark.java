@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.babi.android.xposed.dynamicalarmicon2;
+
+import com.germainz.dynamicalarmicon.ConfigSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The lookups every notification and clock drawable go through: the clock app rule of a package, and
+ * the style and color. Each is measured against what it replaced, a HashSet of package names and
+ * XSharedPreferences reads, which go through a synchronized HashMap and parse the style every time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConfigBenchmark {
+    private static final String CLOCK_PACKAGE = "com.google.android.deskclock";
+    private static final String OTHER_PACKAGE = "com.android.providers.downloads";
+
+    private ClockPackageRules mRules;
+    private Set<String> mPackageSet;
+    private final Map<String, Object> mPreferences = new HashMap<String, Object>();
+    private volatile ConfigSnapshot mSnapshot;
+    /* Copies, so equals() compares the characters like it does for a notification's package. */
+    private String mClockPackage;
+    private String mOtherPackage;
+
+    @Setup
+    public void setUp() {
+        String clockPackages = "com.android.deskclock\n"
+                + "com.google.android.deskclock\n"
+                + "com.mobitobi.android.gentlealarmtrial\n"
+                + "com.mobitobi.android.gentlealarm";
+        mRules = ClockPackageRules.compile(clockPackages);
+        mPackageSet = new HashSet<String>(Arrays.asList(clockPackages.split("\n")));
+        mPreferences.put("pref_clock_style", "1");
+        mPreferences.put("pref_clock_color", 0xFFFFFFFF);
+        mSnapshot = new ConfigSnapshot(1, 0xFFFFFFFF, clockPackages, 1);
+        mClockPackage = new String(CLOCK_PACKAGE.toCharArray());
+        mOtherPackage = new String(OTHER_PACKAGE.toCharArray());
+    }
+
+    @Benchmark
+    public boolean rulesClockApp() {
+        return mRules.find(mClockPackage) != null;
+    }
+
+    @Benchmark
+    public boolean rulesOtherApp() {
+        return mRules.find(mOtherPackage) != null;
+    }
+
+    @Benchmark
+    public boolean setClockApp() {
+        return mPackageSet.contains(mClockPackage);
+    }
+
+    @Benchmark
+    public boolean setOtherApp() {
+        return mPackageSet.contains(mOtherPackage);
+    }
+
+    @Benchmark
+    public int snapshotStyleAndColor() {
+        ConfigSnapshot snapshot = mSnapshot;
+        return snapshot.style ^ snapshot.color;
+    }
+
+    @Benchmark
+    public int preferencesStyleAndColor() {
+        int style;
+        int color;
+        synchronized (mPreferences) {
+            style = Integer.parseInt((String) mPreferences.get("pref_clock_style"));
+        }
+        synchronized (mPreferences) {
+            color = (Integer) mPreferences.get("pref_clock_color");
+        }
+        return style ^ color;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.babi.android.xposed.dynamicalarmicon2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finding the time in notification texts and NEXT_ALARM_FORMATTED values, with TimeScanner and with
+ * the regex it replaced. Each op takes the next text of the corpus, half of which has no time.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TimeScannerBenchmark {
+    private static final Pattern TIME_PATTERN = Pattern.compile("([01]?[0-9]|2[0-3]):([0-5][0-9])");
+    private static final String[] TEXTS = {"Wed 7:30", "Upcoming alarm", "Alarm\nTue 19:05",
+            "Tap to dismiss", "Snoozing until 7:45 AM", "Swipe to snooze", "mer. 06:15", "Alarm"};
+
+    private final CharSequence[] mTexts = new CharSequence[TEXTS.length];
+    private int mIndex;
+
+    public TimeScannerBenchmark() {
+        // Notification texts are usually spanned, so String.valueOf(…) has to copy them.
+        for (int i = 0; i < TEXTS.length; i++)
+            mTexts[i] = new StringBuilder(TEXTS[i]);
+    }
+
+    @Benchmark
+    public int scanner() {
+        return TimeScanner.scan(next());
+    }
+
+    /**
+     * XposedMod.getTimeFromString(…) before TimeScanner, with String.split(…) for TextUtils.split(…)
+     * and a map entry for android.util.Pair.
+     */
+    @Benchmark
+    public Map.Entry<Integer, Integer> regex() {
+        Matcher matcher = TIME_PATTERN.matcher(String.valueOf(next()));
+        if (matcher.find()) {
+            String[] nextAlarmTime = matcher.group().split(":");
+            int nextAlarmHour = Integer.parseInt(nextAlarmTime[0]);
+            int nextAlarmMinute = Integer.parseInt(nextAlarmTime[1]);
+            return new AbstractMap.SimpleImmutableEntry<Integer, Integer>(nextAlarmHour, nextAlarmMinute);
+        }
+        return null;
+    }
+
+    private CharSequence next() {
+        CharSequence text = mTexts[mIndex];
+        mIndex = (mIndex + 1) % mTexts.length;
+        return text;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.germainz.dynamicalarmicon;
+
+/**
+ * Software renderer for the clock icon, plain Java like {@link ClockGeometry}.
+ * <p/>
+ * Uses the same geometry as ClockDrawable, so faces can be compared and timed off-device. Only part
+ * of the headless build, the app doesn't ship it. Each pixel's coverage is estimated with a grid of samples per axis; strokes have BUTT caps like the
+ * drawable's. The output is non-premultiplied ARGB, like Bitmap.getPixels(…). Not thread-safe.
+ */
+public final class ClockRasterizer {
+    private final int mSamples;
+    private final ClockGeometry mGeometry = new ClockGeometry();
+    /* Hands of the face being rendered: end points, relative to the center. */
+    private float mHourX;
+    private float mHourY;
+    private float mMinuteX;
+    private float mMinuteY;
+    /* Bells of the face being rendered: unit vectors towards the arcs' middles, and the chords' distance
+     * to the center. */
+    private final float[] mBellCos = new float[2];
+    private final float[] mBellSin = new float[2];
+    private float mChordDistance;
+
+    /**
+     * @param samples samples per axis and pixel, e.g. 4 for 16 samples per pixel.
+     */
+    public ClockRasterizer(int samples) {
+        if (samples < 1)
+            throw new IllegalArgumentException("samples < 1: " + samples);
+        mSamples = samples;
+    }
+
+    /**
+     * @param thinStroke see {@link ClockGeometry#set(int, boolean, int, int)}.
+     * @param pixels     reused if it holds at least width * height pixels.
+     * @return the face, row by row.
+     */
+    public int[] render(int style, boolean thinStroke, int color, int hours, int minutes, int width, int height,
+                        int[] pixels) {
+        if (pixels == null || pixels.length < width * height)
+            pixels = new int[width * height];
+
+        ClockGeometry geometry = mGeometry;
+        geometry.set(style, thinStroke, width, height);
+        float cx = geometry.getCenterX();
+        float cy = geometry.getCenterY();
+        int hourAngle = ClockGeometry.getHourAngle(hours, minutes);
+        int minuteAngle = ClockGeometry.getMinuteAngle(minutes);
+        mHourX = geometry.getHandEndX(hourAngle, geometry.getHourHandLength()) - cx;
+        mHourY = geometry.getHandEndY(hourAngle, geometry.getHourHandLength()) - cy;
+        mMinuteX = geometry.getHandEndX(minuteAngle, geometry.getMinuteHandLength()) - cx;
+        mMinuteY = geometry.getHandEndY(minuteAngle, geometry.getMinuteHandLength()) - cy;
+        for (int i = 0; i < geometry.getBellCount(); i++) {
+            double midAngle = Math.toRadians(geometry.getBellMidAngle(i));
+            mBellCos[i] = (float) Math.cos(midAngle);
+            mBellSin[i] = (float) Math.sin(midAngle);
+        }
+        mChordDistance = geometry.getBellChordDistance();
+
+        int samples = mSamples;
+        int sampleCount = samples * samples;
+        float step = 1f / samples;
+        int alpha = color >>> 24;
+        int rgb = color & 0xFFFFFF;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int covered = 0;
+                for (int sy = 0; sy < samples; sy++) {
+                    float py = y + (sy + .5f) * step - cy;
+                    for (int sx = 0; sx < samples; sx++) {
+                        float px = x + (sx + .5f) * step - cx;
+                        if (isInside(px, py))
+                            covered++;
+                    }
+                }
+                pixels[y * width + x] = covered == 0 ? 0
+                        : (alpha * covered + sampleCount / 2) / sampleCount << 24 | rgb;
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * @return whether the point, relative to the center, is covered by any part of the face.
+     */
+    private boolean isInside(float x, float y) {
+        ClockGeometry geometry = mGeometry;
+        float distance = (float) Math.sqrt(x * x + y * y);
+
+        /* Circle outline and middle dot */
+        float halfStroke = geometry.getCircleStrokeWidth() / 2;
+        if (Math.abs(distance - geometry.getRadius()) <= halfStroke)
+            return true;
+        if (geometry.getDotRadius() > 0) {
+            if (distance <= geometry.getDotRadius() + halfStroke)
+                return true;
+        } else if (Math.abs(x) <= halfStroke && Math.abs(y) <= halfStroke) {
+            return true;
+        }
+
+        /* Hands */
+        float handHalfWidth = geometry.getHandStrokeWidth() / 2;
+        if (isOnSegment(x, y, 0, 0, mHourX, mHourY, handHalfWidth)
+                || isOnSegment(x, y, 0, 0, mMinuteX, mMinuteY, handHalfWidth))
+            return true;
+
+        /* Bells: the stroked arc plus the area between the arc and its chord */
+        float bellRadius = geometry.getBellRadius();
+        float bellHalfWidth = geometry.getBellStrokeWidth() / 2;
+        if (distance >= Math.min(mChordDistance, bellRadius - bellHalfWidth)
+                && distance <= bellRadius + bellHalfWidth) {
+            float angle = (float) Math.toDegrees(Math.atan2(y, x));
+            float sweep = geometry.getBellSweepAngle();
+            for (int i = 0; i < geometry.getBellCount(); i++) {
+                float fromStart = ((angle - geometry.getBellStartAngle(i)) % 360 + 360) % 360;
+                if (fromStart <= sweep && Math.abs(distance - bellRadius) <= bellHalfWidth)
+                    return true;
+                if (distance <= bellRadius && x * mBellCos[i] + y * mBellSin[i] >= mChordDistance)
+                    return true;
+            }
+        }
+
+        /* Legs */
+        if (geometry.hasLegs()) {
+            float legHalfWidth = geometry.getLegStrokeWidth() / 2;
+            float cx = geometry.getCenterX();
+            float cy = geometry.getCenterY();
+            for (int side = -1; side <= 1; side += 2) {
+                if (isOnSegment(x, y, geometry.getLegStartX(side) - cx, geometry.getLegStartY() - cy,
+                        geometry.getLegEndX(side) - cx, geometry.getLegEndY() - cy, legHalfWidth))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether (x, y) is covered by the segment stroked with BUTT caps.
+     */
+    private static boolean isOnSegment(float x, float y, float x0, float y0, float x1, float y1, float halfWidth) {
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+        float lengthSquared = dx * dx + dy * dy;
+        if (lengthSquared == 0)
+            return false;
+        float t = ((x - x0) * dx + (y - y0) * dy) / lengthSquared;
+        if (t < 0 || t > 1)
+            return false;
+        // Distance to the line through the segment.
+        float cross = (x - x0) * dy - (y - y0) * dx;
+        return cross * cross <= halfWidth * halfWidth * lengthSquared;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.germainz.dynamicalarmicon;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClockGeometryTest {
+    private static final int[] STYLES = {ClockGeometry.STYLE_AOSP, ClockGeometry.STYLE_TOUCHWIZ};
+    private static final float EPSILON = 1e-4f;
+
+    @Test
+    public void anglesAreClockwiseFromTwelve() {
+        assertEquals(0, ClockGeometry.getHourAngle(0, 0));
+        assertEquals(90, ClockGeometry.getHourAngle(3, 0));
+        assertEquals(304, ClockGeometry.getHourAngle(10, 8));
+        // Not reduced, afternoon hours go round a second time.
+        assertEquals(360, ClockGeometry.getHourAngle(12, 0));
+        assertEquals(705, ClockGeometry.getHourAngle(23, 30));
+        assertEquals(0, ClockGeometry.getMinuteAngle(0));
+        assertEquals(48, ClockGeometry.getMinuteAngle(8));
+        assertEquals(354, ClockGeometry.getMinuteAngle(59));
+    }
+
+    @Test
+    public void partsScaleWithTheHeight() {
+        for (int style : STYLES) {
+            ClockGeometry small = new ClockGeometry();
+            small.set(style, false, 20, 20);
+            ClockGeometry large = new ClockGeometry();
+            large.set(style, false, 60, 60);
+            assertEquals(small.getRadius() * 3, large.getRadius(), EPSILON);
+            assertEquals(small.getCircleStrokeWidth() * 3, large.getCircleStrokeWidth(), EPSILON);
+            assertEquals(small.getBellRadius() * 3, large.getBellRadius(), EPSILON);
+            assertEquals(small.getMinuteHandLength() * 3, large.getMinuteHandLength(), EPSILON);
+            assertTrue(large.getHourHandLength() < large.getMinuteHandLength());
+        }
+    }
+
+    @Test
+    public void handsEndClockwiseFromTwelve() {
+        ClockGeometry geometry = new ClockGeometry();
+        geometry.set(ClockGeometry.STYLE_AOSP, false, 60, 60);
+        float cx = geometry.getCenterX();
+        float cy = geometry.getCenterY();
+        float length = geometry.getMinuteHandLength();
+        assertEquals(cx, geometry.getHandEndX(0, length), EPSILON);
+        assertEquals(cy - length, geometry.getHandEndY(0, length), EPSILON);
+        assertEquals(cx + length, geometry.getHandEndX(90, length), EPSILON);
+        assertEquals(cy, geometry.getHandEndY(90, length), EPSILON);
+        assertEquals(cy + length, geometry.getHandEndY(180, length), EPSILON);
+        assertEquals(cx - length, geometry.getHandEndX(270, length), EPSILON);
+        // Afternoon angles aren't reduced, see anglesAreClockwiseFromTwelve().
+        assertEquals(geometry.getHandEndX(45, length), geometry.getHandEndX(405, length), EPSILON);
+        assertEquals(geometry.getHandEndY(45, length), geometry.getHandEndY(405, length), EPSILON);
+    }
+
+    @Test
+    public void bellChordsJoinTheEndsOfTheirArcs() {
+        for (int style : STYLES) {
+            ClockGeometry geometry = new ClockGeometry();
+            geometry.set(style, false, 60, 60);
+            float radius = geometry.getBellRadius();
+            for (int bell = 0; bell < geometry.getBellCount(); bell++) {
+                double middle = Math.toRadians(geometry.getBellMidAngle(bell));
+                double start = Math.toRadians(geometry.getBellStartAngle(bell));
+                double end = Math.toRadians(geometry.getBellStartAngle(bell) + geometry.getBellSweepAngle());
+                // Both ends of the arc project onto the middle's direction at the chord's distance.
+                for (double angle : new double[]{start, end}) {
+                    double projection = radius * (Math.cos(angle) * Math.cos(middle)
+                            + Math.sin(angle) * Math.sin(middle));
+                    assertEquals(geometry.getBellChordDistance(), projection, EPSILON);
+                }
+                // Bells are above the center, arc angles being clockwise from 3 o'clock.
+                assertTrue(Math.sin(middle) < 0);
+            }
+        }
+    }
+
+    @Test
+    public void widerBoundsOnlyMoveTheCenter() {
+        // ClockFaceAtlas relies on this to share square faces with wider bounds.
+        for (int style : STYLES) {
+            ClockGeometry square = new ClockGeometry();
+            square.set(style, false, 54, 54);
+            ClockGeometry wide = new ClockGeometry();
+            wide.set(style, false, 72, 54);
+            assertEquals(square.getCenterX() + 9, wide.getCenterX(), EPSILON);
+            assertEquals(square.getCenterY(), wide.getCenterY(), EPSILON);
+            assertEquals(square.getRadius(), wide.getRadius(), EPSILON);
+            assertEquals(square.getBellRadius(), wide.getBellRadius(), EPSILON);
+            if (square.hasLegs())
+                assertEquals(square.getLegEndX(1) + 9, wide.getLegEndX(1), EPSILON);
+        }
+    }
+
+    @Test
+    public void faceFitsInASquareOfTheHeight() {
+        for (int style : STYLES) {
+            for (boolean thinStroke : new boolean[]{false, true}) {
+                int size = 60;
+                ClockGeometry geometry = new ClockGeometry();
+                geometry.set(style, thinStroke, size, size);
+                float cx = geometry.getCenterX();
+                float cy = geometry.getCenterY();
+                float circle = geometry.getRadius() + geometry.getCircleStrokeWidth() / 2;
+                float bells = geometry.getBellRadius() + geometry.getBellStrokeWidth() / 2;
+                assertInside(size, cx - circle, cy - circle, cx + circle, cy + circle);
+                assertInside(size, cx - bells, cy - bells, cx + bells, cy);
+                if (geometry.hasLegs()) {
+                    float half = geometry.getLegStrokeWidth() / 2;
+                    assertInside(size, geometry.getLegEndX(-1) - half, geometry.getLegStartY(),
+                            geometry.getLegEndX(1) + half, geometry.getLegEndY() + half);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void touchWizHasSymmetricLegsAndAospNone() {
+        ClockGeometry geometry = new ClockGeometry();
+        geometry.set(ClockGeometry.STYLE_AOSP, false, 40, 40);
+        assertTrue(!geometry.hasLegs());
+        assertEquals(2, geometry.getBellCount());
+
+        geometry.set(ClockGeometry.STYLE_TOUCHWIZ, false, 40, 40);
+        assertTrue(geometry.hasLegs());
+        assertEquals(geometry.getCenterX() - geometry.getLegEndX(-1), geometry.getLegEndX(1) - geometry.getCenterX(),
+                EPSILON);
+        assertTrue(geometry.getLegEndY() > geometry.getLegStartY());
+        assertEquals(0, geometry.getDotRadius(), 0);
+    }
+
+    private static void assertInside(int size, float left, float top, float right, float bottom) {
+        assertTrue("left " + left, left >= 0);
+        assertTrue("top " + top, top >= 0);
+        assertTrue("right " + right, right <= size);
+        assertTrue("bottom " + bottom, bottom <= size);
+    }
+}
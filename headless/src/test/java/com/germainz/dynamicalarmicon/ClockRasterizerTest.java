@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.germainz.dynamicalarmicon;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Compares rendered faces with the PNGs in src/test/resources/goldens: 18 and 20 dp status bar icons
+ * on xxhdpi screens, and a 192 px face where mistakes are easier to see. After an intended change,
+ * run gradle test -PupdateGoldens and look at the new images before committing them.
+ */
+public class ClockRasterizerTest {
+    private static final int SAMPLES = 4;
+    private static final int WHITE = 0xFFFFFFFF;
+    /* One sample of coverage, so a sample landing on the other side of an edge doesn't fail the test. */
+    private static final int ALPHA_TOLERANCE = 255 / (SAMPLES * SAMPLES) + 1;
+
+    private final ClockRasterizer mRasterizer = new ClockRasterizer(SAMPLES);
+
+    @Test
+    public void aospMatchesGoldens() throws IOException {
+        for (int size : new int[]{54, 60, 192})
+            assertGolden("aosp_" + size, ClockGeometry.STYLE_AOSP, false, size, size);
+        assertGolden("aosp_thin_54", ClockGeometry.STYLE_AOSP, true, 54, 54);
+    }
+
+    @Test
+    public void touchWizMatchesGoldens() throws IOException {
+        for (int size : new int[]{54, 60, 192})
+            assertGolden("touchwiz_" + size, ClockGeometry.STYLE_TOUCHWIZ, false, size, size);
+    }
+
+    @Test
+    public void widerBoundsCenterTheFace() {
+        for (int style : new int[]{ClockGeometry.STYLE_AOSP, ClockGeometry.STYLE_TOUCHWIZ}) {
+            int[] square = mRasterizer.render(style, false, WHITE, 10, 8, 54, 54, null);
+            int[] wide = mRasterizer.render(style, false, WHITE, 10, 8, 72, 54, null);
+            for (int y = 0; y < 54; y++) {
+                for (int x = 0; x < 72; x++) {
+                    int pixel = wide[y * 72 + x];
+                    int expected = x < 9 || x >= 63 ? 0 : square[y * 54 + x - 9];
+                    assertAlpha(expected, pixel, x, y, "wide");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void colorIsKeptAndAlphaScaled() {
+        int[] pixels = mRasterizer.render(ClockGeometry.STYLE_AOSP, false, 0x80336699, 10, 8, 54, 54, null);
+        boolean covered = false;
+        for (int pixel : pixels) {
+            if (pixel == 0)
+                continue;
+            covered = true;
+            assertEquals(0x336699, pixel & 0xFFFFFF);
+            assertTrue(pixel >>> 24 <= 0x80);
+        }
+        assertTrue(covered);
+    }
+
+    @Test
+    public void pixelsAreReusedWhenLargeEnough() {
+        int[] pixels = new int[60 * 60];
+        assertTrue(pixels == mRasterizer.render(ClockGeometry.STYLE_AOSP, false, WHITE, 10, 8, 54, 54, pixels));
+        assertTrue(pixels != mRasterizer.render(ClockGeometry.STYLE_AOSP, false, WHITE, 10, 8, 64, 64, pixels));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNoSamples() {
+        new ClockRasterizer(0);
+    }
+
+    private void assertGolden(String name, int style, boolean thinStroke, int width, int height)
+            throws IOException {
+        // 10:08, so neither hand hides the other or the bells.
+        int[] pixels = mRasterizer.render(style, thinStroke, WHITE, 10, 8, width, height, null);
+        File file = new File(System.getProperty("goldens.dir"), name + ".png");
+        if (Boolean.getBoolean("goldens.update")) {
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            image.setRGB(0, 0, width, height, pixels, 0, width);
+            ImageIO.write(image, "png", file);
+            return;
+        }
+        if (!file.exists())
+            fail(file + " is missing, run gradle test -PupdateGoldens");
+        BufferedImage golden = ImageIO.read(file);
+        assertEquals(name + " width", width, golden.getWidth());
+        assertEquals(name + " height", height, golden.getHeight());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++)
+                assertAlpha(golden.getRGB(x, y), pixels[y * width + x], x, y, name);
+        }
+    }
+
+    private static void assertAlpha(int expected, int actual, int x, int y, String name) {
+        int difference = Math.abs((expected >>> 24) - (actual >>> 24));
+        if (difference > ALPHA_TOLERANCE)
+            fail(String.format("%s (%d, %d): expected %08x, was %08x", name, x, y, expected, actual));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.germainz.dynamicalarmicon;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HookTraceTest {
+    private static final String SECTION = HookTrace.name("section");
+    private static final String COUNTER = HookTrace.name("counter");
+
+    private final FakeSink mSink = new FakeSink();
+
+    @After
+    public void tearDown() {
+        HookTrace.setSink(null);
+    }
+
+    @Test
+    public void offByDefaultAndDoesNothing() {
+        assertFalse(HookTrace.isEnabled());
+        HookTrace.Sink sink = HookTrace.begin(SECTION);
+        assertNull(sink);
+        HookTrace.counter(COUNTER, 1);
+        HookTrace.end(sink);
+    }
+
+    @Test
+    public void sectionsAndCountersReachTheSink() {
+        HookTrace.setSink(mSink);
+        assertTrue(HookTrace.isEnabled());
+        HookTrace.Sink sink = HookTrace.begin(SECTION);
+        assertSame(mSink, sink);
+        HookTrace.counter(COUNTER, 3);
+        HookTrace.end(sink);
+        assertEquals("begin " + SECTION + "\ncounter " + COUNTER + " 3\nend\n", mSink.mLog.toString());
+    }
+
+    @Test
+    public void switchingOffInASectionStillEndsIt() {
+        HookTrace.setSink(mSink);
+        HookTrace.Sink sink = HookTrace.begin(SECTION);
+        HookTrace.setSink(null);
+        HookTrace.counter(COUNTER, 1);
+        HookTrace.end(sink);
+        assertEquals("begin " + SECTION + "\nend\n", mSink.mLog.toString());
+    }
+
+    @Test
+    public void switchingOnInASectionDoesNotEndIt() {
+        HookTrace.Sink sink = HookTrace.begin(SECTION);
+        HookTrace.setSink(mSink);
+        HookTrace.end(sink);
+        assertEquals("", mSink.mLog.toString());
+    }
+
+    @Test
+    public void replacingTheSinkEndsSectionsOnTheirOwn() {
+        FakeSink other = new FakeSink();
+        HookTrace.setSink(mSink);
+        HookTrace.Sink outer = HookTrace.begin(SECTION);
+        HookTrace.setSink(other);
+        HookTrace.end(HookTrace.begin(SECTION));
+        HookTrace.end(outer);
+        assertEquals("begin " + SECTION + "\nend\n", mSink.mLog.toString());
+        assertEquals("begin " + SECTION + "\nend\n", other.mLog.toString());
+    }
+
+    @Test
+    public void namesArePrefixedAndShortEnough() {
+        assertEquals("DynamicAlarmIcon:section", SECTION);
+        assertTrue(SECTION.length() <= 127);
+    }
+
+    private static final class FakeSink implements HookTrace.Sink {
+        final StringBuilder mLog = new StringBuilder();
+
+        @Override
+        public void beginSection(String name) {
+            mLog.append("begin ").append(name).append('\n');
+        }
+
+        @Override
+        public void endSection() {
+            mLog.append("end\n");
+        }
+
+        @Override
+        public void counter(String name, int value) {
+            mLog.append("counter ").append(name).append(' ').append(value).append('\n');
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.babi.android.xposed.dynamicalarmicon2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class NotificationTimeCacheTest {
+    private static final String CLOCK = "com.android.deskclock";
+    private static final int LAYOUT = 0x01090076;
+    private static final int SEVEN_THIRTY = 7 * 60 + 30;
+    private static final int EIGHT_THIRTY = 8 * 60 + 30;
+
+    private final NotificationTimeCache mCache = new NotificationTimeCache(2);
+
+    @Test
+    public void repostWithTheSameTextsHits() {
+        mCache.put(CLOCK, 1, null, fingerprint("Upcoming alarm", "Wed 7:30"), SEVEN_THIRTY);
+        // Separate instances, like the texts of a repost.
+        assertEquals(SEVEN_THIRTY, mCache.get(CLOCK, 1, null,
+                fingerprint(new StringBuilder("Upcoming alarm"), new StringBuilder("Wed 7:30"))));
+    }
+
+    @Test
+    public void notificationsWithoutATimeAreCachedToo() {
+        mCache.put(CLOCK, 1, null, fingerprint("Tap to dismiss"), TimeScanner.NO_TIME);
+        assertEquals(TimeScanner.NO_TIME, mCache.get(CLOCK, 1, null, fingerprint("Tap to dismiss")));
+    }
+
+    @Test
+    public void changedTextMisses() {
+        mCache.put(CLOCK, 1, null, fingerprint("Upcoming alarm", "Alarm 7:30"), SEVEN_THIRTY);
+        // Same length and layout, only the time differs.
+        assertEquals(NotificationTimeCache.MISS, mCache.get(CLOCK, 1, null, fingerprint("Upcoming alarm", "Alarm 8:30")));
+        // Texts moving from one view to another.
+        assertEquals(NotificationTimeCache.MISS, mCache.get(CLOCK, 1, null, fingerprint("Upcoming alarmAlarm 7:30")));
+
+        mCache.put(CLOCK, 1, null, fingerprint("Upcoming alarm", "Alarm 8:30"), EIGHT_THIRTY);
+        assertEquals(EIGHT_THIRTY, mCache.get(CLOCK, 1, null, fingerprint("Upcoming alarm", "Alarm 8:30")));
+        // The notification's previous content was replaced, not kept next to it.
+        assertEquals(NotificationTimeCache.MISS, mCache.get(CLOCK, 1, null, fingerprint("Upcoming alarm", "Alarm 7:30")));
+    }
+
+    @Test
+    public void keyedByPackageIdAndTag() {
+        int fingerprint = fingerprint("Wed 7:30");
+        mCache.put(CLOCK, 1, "tag", fingerprint, SEVEN_THIRTY);
+        assertEquals(NotificationTimeCache.MISS, mCache.get("com.example.clock", 1, "tag", fingerprint));
+        assertEquals(NotificationTimeCache.MISS, mCache.get(CLOCK, 2, "tag", fingerprint));
+        assertEquals(NotificationTimeCache.MISS, mCache.get(CLOCK, 1, null, fingerprint));
+        assertEquals(SEVEN_THIRTY, mCache.get(CLOCK, 1, "tag", fingerprint));
+    }
+
+    @Test
+    public void layoutIsPartOfTheFingerprint() {
+        assertNotEquals(NotificationTimeCache.addText(NotificationTimeCache.fingerprint(LAYOUT), "Wed 7:30"),
+                NotificationTimeCache.addText(NotificationTimeCache.fingerprint(LAYOUT + 1), "Wed 7:30"));
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        mCache.put(CLOCK, 1, null, fingerprint("Wed 7:30"), SEVEN_THIRTY);
+        mCache.put(CLOCK, 2, null, fingerprint("Thu 8:30"), EIGHT_THIRTY);
+        // Makes 2 the least recently used.
+        assertEquals(SEVEN_THIRTY, mCache.get(CLOCK, 1, null, fingerprint("Wed 7:30")));
+        mCache.put(CLOCK, 3, null, fingerprint("Fri 9:00"), 9 * 60);
+
+        assertEquals(NotificationTimeCache.MISS, mCache.get(CLOCK, 2, null, fingerprint("Thu 8:30")));
+        assertEquals(SEVEN_THIRTY, mCache.get(CLOCK, 1, null, fingerprint("Wed 7:30")));
+        assertEquals(9 * 60, mCache.get(CLOCK, 3, null, fingerprint("Fri 9:00")));
+    }
+
+    @Test
+    public void clearDropsEverything() {
+        mCache.put(CLOCK, 1, null, fingerprint("Wed 7:30"), SEVEN_THIRTY);
+        mCache.clear();
+        assertEquals(NotificationTimeCache.MISS, mCache.get(CLOCK, 1, null, fingerprint("Wed 7:30")));
+    }
+
+    private static int fingerprint(CharSequence... texts) {
+        int fingerprint = NotificationTimeCache.fingerprint(LAYOUT);
+        for (CharSequence text : texts)
+            fingerprint = NotificationTimeCache.addText(fingerprint, text);
+        return fingerprint;
+    }
+}
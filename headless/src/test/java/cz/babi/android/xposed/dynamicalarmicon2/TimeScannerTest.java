@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.babi.android.xposed.dynamicalarmicon2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TimeScannerTest {
+    private static final int NO_TIME = TimeScanner.NO_TIME;
+
+    @Test
+    public void colon() {
+        assertTime(7 * 60 + 30, "7:30");
+        assertTime(7 * 60 + 30, "Wed 07:30");
+        assertTime(19 * 60 + 5, "Upcoming alarm\nTue 19:05");
+        assertTime(0, "0:00");
+        assertTime(23 * 60 + 59, "23:59");
+        assertTime(7 * 60 + 30, "7\uFF1A30");
+        assertTime(NO_TIME, "24:00");
+        assertTime(NO_TIME, "7:60");
+        assertTime(NO_TIME, "7:5");
+        assertTime(NO_TIME, "7:305");
+        assertTime(NO_TIME, "123:45");
+        assertTime(NO_TIME, "Tap to dismiss");
+        assertTime(NO_TIME, "");
+    }
+
+    @Test
+    public void amPm() {
+        assertTime(19 * 60 + 30, "7:30 PM");
+        assertTime(19 * 60 + 30, "7:30pm");
+        assertTime(19 * 60 + 30, "7:30 p.m.");
+        assertTime(7 * 60 + 30, "7:30 AM");
+        assertTime(7 * 60 + 30, "7:30 a.m.");
+        assertTime(30, "12:30 AM");
+        assertTime(12 * 60 + 30, "12:30 PM");
+        assertTime(19 * 60 + 30, "7:30\u202FPM");
+        // Not a suffix, the next word just starts with one.
+        assertTime(7 * 60 + 30, "7:30 AMBER");
+        assertTime(7 * 60 + 30, "7:30 Pmore");
+        // Already 24h.
+        assertTime(19 * 60 + 30, "19:30 PM");
+    }
+
+    @Test
+    public void otherScripts() {
+        assertTime(7 * 60 + 30, "\u0667:\u0663\u0660");
+        assertTime(7 * 60 + 30, "\u096D:\u0969\u0966");
+        assertTime(21 * 60 + 45, "\uFF12\uFF11:\uFF14\uFF15");
+    }
+
+    @Test
+    public void dotAndH() {
+        assertTime(7 * 60 + 30, "7.30");
+        assertTime(7 * 60 + 30, "7h30");
+        assertTime(19 * 60 + 5, "mer. 19h05");
+        assertTime(19 * 60 + 30, "7.30 pm");
+        // A colon wins wherever it is.
+        assertTime(8 * 60 + 15, "7.30 or 8:15");
+        assertTime(7 * 60 + 30, "17.10.2016 7:30");
+    }
+
+    @Test
+    public void dotAndHRejectVersionsAndDates() {
+        assertTime(NO_TIME, "v1.20");
+        assertTime(NO_TIME, "Version 2.1.20");
+        assertTime(NO_TIME, "1.17.10");
+        assertTime(NO_TIME, "17.10.");
+        assertTime(NO_TIME, "Di. 17.10.");
+        assertTime(NO_TIME, "17.10.2016");
+        assertTime(NO_TIME, "ch7h30");
+        // Same as a date, so rejected too.
+        assertTime(NO_TIME, "at 7.30.");
+    }
+
+    @Test
+    public void packing() {
+        int time = 19 * 60 + 5;
+        assertEquals(19, TimeScanner.getHour(time));
+        assertEquals(5, TimeScanner.getMinute(time));
+    }
+
+    @Test
+    public void acceptsAnyCharSequence() {
+        assertTime(7 * 60 + 30, new StringBuilder("Wed ").append("7:30"));
+    }
+
+    private static void assertTime(int expected, CharSequence text) {
+        assertEquals(text.toString(), expected, TimeScanner.scan(text));
+    }
+}
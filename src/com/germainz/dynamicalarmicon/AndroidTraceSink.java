@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.germainz.dynamicalarmicon;
+
+import android.Manifest;
+import android.os.Trace;
+
+import java.lang.reflect.Method;
+
+/**
+ * The {@link HookTrace} sink that writes to android.os.Trace, switched at runtime with an
+ * {@link #ACTION_TRACE} broadcast. Counters go through the hidden Trace.traceCounter(…), when it
+ * exists, under the app trace tag.
+ */
+public final class AndroidTraceSink implements HookTrace.Sink {
+    public static final String ACTION_TRACE = "com.germainz.dynamicalarmicon.TRACE";
+    public static final String EXTRA_ENABLED = "enabled";
+    /* Needed to send ACTION_TRACE. The shell holds it, so tracing can still be switched with adb. */
+    public static final String PERMISSION = Manifest.permission.DUMP;
+    private static final long TRACE_TAG_APP = 1L << 12;
+
+    private static AndroidTraceSink sInstance;
+    private final Method mTraceCounter;
+
+    private AndroidTraceSink() {
+        Method traceCounter = null;
+        try {
+            traceCounter = Trace.class.getMethod("traceCounter", long.class, String.class, int.class);
+        } catch (NoSuchMethodException ignored) {
+        }
+        mTraceCounter = traceCounter;
+    }
+
+    /**
+     * Switches tracing to android.os.Trace on or off. Needs Android 4.3, does nothing before.
+     */
+    public static synchronized void setEnabled(boolean enabled) {
+        if (!enabled) {
+            HookTrace.setSink(null);
+        } else if (Config.IS_JELLYBEANMR2_OR_ABOVE) {
+            if (sInstance == null)
+                sInstance = new AndroidTraceSink();
+            HookTrace.setSink(sInstance);
+        }
+    }
+
+    @Override
+    public void beginSection(String name) {
+        Trace.beginSection(name);
+    }
+
+    @Override
+    public void endSection() {
+        Trace.endSection();
+    }
+
+    @Override
+    public void counter(String name, int value) {
+        if (mTraceCounter == null)
+            return;
+        try {
+            mTraceCounter.invoke(null, TRACE_TAG_APP, name, value);
+        } catch (Exception ignored) {
+        }
+    }
+}
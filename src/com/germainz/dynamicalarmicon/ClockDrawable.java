@@ -19,60 +19,218 @@ package com.germainz.dynamicalarmicon;
 import android.graphics.Canvas;
 import android.graphics.ColorFilter;
 import android.graphics.Paint;
+import android.graphics.Path;
 import android.graphics.PixelFormat;
+import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
 
+/**
+ * The alarm clock icon, in either the AOSP or the TouchWiz style. The style can be changed in place.
+ * <p/>
+ * Time, style and color live in a {@link ClockState} which may be shared by several drawables, see
+ * {@link #getConstantState()}. Each drawable keeps its own Paint, bounds and color filter.
+ */
 public class ClockDrawable extends Drawable {
-
+    private static final String TRACE_DRAW = HookTrace.name("ClockDrawable.draw");
+    private static final int NO_ANGLE = Integer.MIN_VALUE;
     final Paint mPaint;
-    int mHourAngle;
-    int mMinuteAngle;
+    private final ClockState mState;
+    private final ClockGeometry mGeometry = new ClockGeometry();
+    /* Filled outlines built from the bounds and style, see onBoundsChange(…). Overlapping parts are
+     * kept in separate paths since the stroke outlines' windings could cancel out. */
+    private final Path mFacePath = new Path();
+    private final Path mLegsPath = new Path();
+    /* Rebuilt from ClockGeometry's hand ends when the time changes, see updateHands(). Reused so
+     * drawing a new time doesn't allocate. */
+    private final Path mHourHandPath = new Path();
+    private final Path mMinuteHandPath = new Path();
+    private final Path mHandSource = new Path();
+    private final Paint mHandStroke = new Paint();
+    /* The angles the hand paths were built for, NO_ANGLE after the bounds or style changed. */
+    private int mHourHandAngle = NO_ANGLE;
+    private int mMinuteHandAngle = NO_ANGLE;
+    private float mX;
+    private float mY;
+    boolean mAtlasEnabled = true;
+    private ClockFaceAtlas mAtlas;
+    /* The face's slot in the atlas, and where it's drawn since faces may be narrower than the
+     * bounds. */
+    private final Rect mAtlasSource = new Rect();
+    private final Rect mAtlasBounds = new Rect();
 
-    public ClockDrawable(int color, int hours, int minutes) {
+    public ClockDrawable(int style, int color, int hours, int minutes) {
+        this(new ClockState(style, color, hours, minutes));
+    }
+
+    ClockDrawable(ClockState state) {
+        mState = state;
         mPaint = new Paint();
-        mPaint.setColor(color);
-        mPaint.setStyle(Paint.Style.FILL_AND_STROKE);
+        mPaint.setColor(state.mColor);
+        mPaint.setStyle(Paint.Style.FILL);
         mPaint.setAntiAlias(true);
-        mHourAngle = (int) ((hours + minutes / 60f) * 360 / 12);
-        mMinuteAngle = minutes * 360 / 60;
+        mHandStroke.setStyle(Paint.Style.STROKE);
+        state.attach(this);
     }
 
     @Override
-    public void draw(Canvas canvas) {
-        float width = getBounds().width();
-        float height = getBounds().height() * .9f;
-        float x = width / 2;
-        float y = height / 2 + height / 10;
-        float radius = height / 3;
+    public ClockState getConstantState() {
+        return mState;
+    }
+
+    public int getStyle() {
+        return mState.mStyle;
+    }
+
+    /**
+     * Changes the style of every drawable sharing this one's state.
+     */
+    public void setStyle(int style) {
+        mState.setStyle(style);
+    }
+
+    void onStyleChanged() {
+        onBoundsChange(getBounds());
+        invalidateSelf();
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        ClockGeometry geometry = mGeometry;
+        geometry.set(mState.mStyle, !Config.IS_LOLLIPOP_OR_ABOVE, bounds.width(), bounds.height());
+        mX = geometry.getCenterX();
+        mY = geometry.getCenterY();
+
+        Paint stroke = new Paint();
+        Path source = new Path();
+        mFacePath.rewind();
+        mLegsPath.rewind();
+
+        /* Clock's circle outline and middle dot */
+        stroke.setStyle(Paint.Style.STROKE);
+        stroke.setStrokeWidth(geometry.getCircleStrokeWidth());
+        source.addCircle(mX, mY, geometry.getRadius(), Path.Direction.CW);
+        if (geometry.getDotRadius() > 0)
+            source.addCircle(mX, mY, geometry.getDotRadius(), Path.Direction.CW);
+        addOutline(stroke, source, mFacePath);
+        if (geometry.getDotRadius() == 0) {
+            // A square since the stroke cap is BUTT.
+            float half = geometry.getCircleStrokeWidth() / 2;
+            mFacePath.addRect(mX - half, mY - half, mX + half, mY + half, Path.Direction.CW);
+        }
 
-		/* Clock's circle outline and middle dot */
-        mPaint.setStyle(Paint.Style.STROKE);
-        mPaint.setStrokeWidth(radius / (Config.IS_LOLLIPOP_OR_ABOVE ? 4f : 7f));
-        canvas.drawCircle(x, y, radius, mPaint);
-        canvas.drawCircle(x, y, radius / 20f, mPaint);
+        /* Bells */
+        stroke.setStyle(Paint.Style.FILL_AND_STROKE);
+        stroke.setStrokeWidth(geometry.getBellStrokeWidth());
+        RectF bellRect = getBellRect(geometry.getBellRadius());
+        for (int i = 0; i < geometry.getBellCount(); i++)
+            source.addArc(bellRect, geometry.getBellStartAngle(i), geometry.getBellSweepAngle());
+        addOutline(stroke, source, mFacePath);
 
-        mPaint.setStyle(Paint.Style.FILL_AND_STROKE);
+        /* Legs, which overlap the circle */
+        if (geometry.hasLegs()) {
+            stroke.setStrokeWidth(geometry.getLegStrokeWidth());
+            for (int side = -1; side <= 1; side += 2) {
+                source.moveTo(geometry.getLegStartX(side), geometry.getLegStartY());
+                source.lineTo(geometry.getLegEndX(side), geometry.getLegEndY());
+            }
+            addOutline(stroke, source, mLegsPath);
+        }
 
-        /* Draw hands */
-        float stopX = (float) (x + (radius * .5) * Math.cos(Math.toRadians(mHourAngle - 90)));
-        float stopY = (float) (y + (radius * .5) * Math.sin(Math.toRadians(mHourAngle - 90)));
-        canvas.drawLine(x, y, stopX, stopY, mPaint);
+        /* Hands, built when drawn */
+        mHandStroke.setStrokeWidth(geometry.getHandStrokeWidth());
+        mHourHandAngle = NO_ANGLE;
+        mMinuteHandAngle = NO_ANGLE;
 
-        stopX = (float) (x + (radius * .8) * Math.cos(Math.toRadians(mMinuteAngle - 90)));
-        stopY = (float) (y + (radius * .8) * Math.sin(Math.toRadians(mMinuteAngle - 90)));
-        canvas.drawLine(x, y, stopX, stopY, mPaint);
+        int faceWidth = ClockFaceAtlas.getFaceWidth(bounds.width(), bounds.height());
+        mAtlas = mAtlasEnabled ? ClockFaceAtlas.obtain(mState.mStyle, faceWidth, bounds.height()) : null;
+        int atlasLeft = (bounds.width() - faceWidth) / 2;
+        mAtlasSource.set(0, 0, faceWidth, bounds.height());
+        mAtlasBounds.set(atlasLeft, 0, atlasLeft + faceWidth, bounds.height());
+    }
+
+    private void updateHands() {
+        int hourAngle = mState.mHourAngle;
+        if (hourAngle != mHourHandAngle) {
+            buildHandPath(hourAngle, mGeometry.getHourHandLength(), mHourHandPath);
+            mHourHandAngle = hourAngle;
+        }
+        int minuteAngle = mState.mMinuteAngle;
+        if (minuteAngle != mMinuteHandAngle) {
+            buildHandPath(minuteAngle, mGeometry.getMinuteHandLength(), mMinuteHandPath);
+            mMinuteHandAngle = minuteAngle;
+        }
+    }
+
+    private void buildHandPath(int angle, float length, Path handPath) {
+        Path source = mHandSource;
+        source.rewind();
+        source.moveTo(mX, mY);
+        source.lineTo(mGeometry.getHandEndX(angle, length), mGeometry.getHandEndY(angle, length));
+        handPath.rewind();
+        mHandStroke.getFillPath(source, handPath);
+    }
 
-		/* Draw bells */
-        final float afterRadius = radius * 1.3f;
-        RectF rectF = new RectF(x - afterRadius, y - afterRadius, x + afterRadius, y + afterRadius);
-        canvas.drawArc(rectF, 200, 40, false, mPaint);
-        canvas.drawArc(rectF, 300, 40, false, mPaint);
+    private RectF getBellRect(float afterRadius) {
+        return new RectF(mX - afterRadius, mY - afterRadius, mX + afterRadius, mY + afterRadius);
     }
 
+    /**
+     * Appends the area source covers when drawn with the given paint to outline, then clears source.
+     */
+    private static void addOutline(Paint stroke, Path source, Path outline) {
+        Path filled = new Path();
+        stroke.getFillPath(source, filled);
+        outline.addPath(filled);
+        source.rewind();
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        HookTrace.Sink sink = HookTrace.begin(TRACE_DRAW);
+        try {
+            if (mAtlas != null) {
+                int top = mAtlas.getFaceTop(mState.mFaceIndex);
+                Rect source = mAtlasSource;
+                source.top = top;
+                source.bottom = top + mAtlasBounds.height();
+                canvas.drawBitmap(mAtlas.getSlots(), source, mAtlasBounds, mPaint);
+            } else {
+                drawFace(canvas);
+            }
+        } finally {
+            HookTrace.end(sink);
+        }
+    }
+
+    /**
+     * Draws the whole clock face. Also used to render {@link ClockFaceAtlas} faces.
+     */
+    void drawFace(Canvas canvas) {
+        canvas.drawPath(mFacePath, mPaint);
+        if (!mLegsPath.isEmpty())
+            canvas.drawPath(mLegsPath, mPaint);
+        updateHands();
+        canvas.drawPath(mHourHandPath, mPaint);
+        canvas.drawPath(mMinuteHandPath, mPaint);
+    }
+
+    /**
+     * Changes the time of every drawable sharing this one's state.
+     */
     public void setTime(int hours, int minutes) {
-        mHourAngle = (int) ((hours + minutes / 60f) * 360 / 12);
-        mMinuteAngle = minutes * 360 / 60;
+        mState.setTime(hours, minutes);
+    }
+
+    /**
+     * Changes the color of every drawable sharing this one's state.
+     */
+    public void setColor(int color) {
+        mState.setColor(color);
+    }
+
+    void onColorChanged() {
+        mPaint.setColor(mState.mColor);
         invalidateSelf();
     }
 
@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.germainz.dynamicalarmicon;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Pre-rendered clock faces of one style at one pixel size.
+ * <p/>
+ * Faces are ALPHA_8 masks, so a single atlas serves every clock color: the drawable blits the mask
+ * with its own Paint, which applies the color, alpha and color filter. The face only depends on the
+ * height and is centered horizontally, so faces are square and wider bounds share them, see
+ * {@link #getFaceWidth(int, int)}.
+ * <p/>
+ * Only a few times are shown at once, so an atlas doesn't hold all {@link #FACE_COUNT} faces but
+ * {@link #SLOT_COUNT} of them, stacked in one bitmap. A face is put in the least recently used slot
+ * the first time it's drawn: copied from the {@link ClockFaceAtlasFile} the settings app wrote for
+ * the style and size, which is mapped in the background, or else rendered on the spot. Either costs
+ * about as much as drawing the face once.
+ * <p/>
+ * An atlas lives as long as a drawable uses it, so there's one per style and size in use. Their
+ * total size is capped by a budget sized from the heap, see {@link #setMemoryBudget(Context)}.
+ * Sizes that don't fit are drawn directly.
+ */
+public class ClockFaceAtlas {
+    public static final int FACE_COUNT = 12 * 60;
+    static final int SLOT_COUNT = 8;
+
+    /* Until setMemoryBudget(…) is called. Enough for the status bar icons of any density. */
+    private static final int DEFAULT_BUDGET_BYTES = 256 * 1024;
+    /* Fractions of the heap the atlases may take. */
+    private static final int HEAP_FRACTION = 64;
+    private static final int LOW_RAM_HEAP_FRACTION = 256;
+    private static final int NO_FACE = -1;
+
+    private static final Map<Long, WeakReference<ClockFaceAtlas>> sAtlases =
+            new HashMap<Long, WeakReference<ClockFaceAtlas>>();
+    private static int sBudgetBytes = DEFAULT_BUDGET_BYTES;
+    private static ExecutorService sExecutor;
+
+    private final int mStyle;
+    private final int mWidth;
+    private final int mHeight;
+    /* The slots, from top to bottom. Created when the first face is drawn. */
+    private Bitmap mSlots;
+    private final Canvas mCanvas = new Canvas();
+    private final int[] mSlotFaces = new int[SLOT_COUNT];
+    private final long[] mSlotUses = new long[SLOT_COUNT];
+    private long mUses;
+    private ClockDrawable mRenderer;
+    /* Null until mapped, or if the settings app didn't write an up to date file. */
+    private volatile ClockFaceAtlasFile mFile;
+    /* Mapped faces are copied here, then drawn into their slot. */
+    private Bitmap mFileFace;
+    private Paint mCopyPaint;
+    private boolean mStarted;
+
+    private ClockFaceAtlas(int style, int width, int height) {
+        mStyle = style;
+        mWidth = width;
+        mHeight = height;
+        for (int i = 0; i < SLOT_COUNT; i++)
+            mSlotFaces[i] = NO_FACE;
+    }
+
+    /**
+     * Sizes the budget of the atlases from the memory class, and keeps it smaller on low RAM devices.
+     */
+    public static synchronized void setMemoryBudget(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        boolean lowRam = Config.IS_KITKAT_OR_ABOVE && activityManager.isLowRamDevice();
+        long heapBytes = (long) activityManager.getMemoryClass() * 1024 * 1024;
+        sBudgetBytes = (int) (heapBytes / (lowRam ? LOW_RAM_HEAP_FRACTION : HEAP_FRACTION));
+    }
+
+    /**
+     * @return the width of the faces drawn in bounds of the given size.
+     */
+    public static int getFaceWidth(int width, int height) {
+        return Math.min(width, height);
+    }
+
+    /**
+     * Returns the atlas for the given style and face size, or null if the size is empty or the atlases
+     * in use leave no room for it. This doesn't map or render anything by itself.
+     */
+    public static synchronized ClockFaceAtlas obtain(int style, int width, int height) {
+        if (width <= 0 || height <= 0)
+            return null;
+
+        long key = ((long) style << 40) | ((long) width << 20) | height;
+        WeakReference<ClockFaceAtlas> reference = sAtlases.get(key);
+        ClockFaceAtlas atlas = reference != null ? reference.get() : null;
+        if (atlas != null)
+            return atlas;
+
+        long usedBytes = 0;
+        for (Iterator<WeakReference<ClockFaceAtlas>> it = sAtlases.values().iterator(); it.hasNext(); ) {
+            ClockFaceAtlas used = it.next().get();
+            if (used == null)
+                it.remove();
+            else
+                usedBytes += getByteCount(used.mWidth, used.mHeight);
+        }
+        if (usedBytes + getByteCount(width, height) > sBudgetBytes)
+            return null;
+
+        atlas = new ClockFaceAtlas(style, width, height);
+        sAtlases.put(key, new WeakReference<ClockFaceAtlas>(atlas));
+        return atlas;
+    }
+
+    /* The slots and the mapped face copy. */
+    private static long getByteCount(int width, int height) {
+        return (long) ((width + 3) & ~3) * height * (SLOT_COUNT + 1);
+    }
+
+    public static int getFaceIndex(int hours, int minutes) {
+        return (hours % 12) * 60 + minutes % 60;
+    }
+
+    /**
+     * Puts the face in a slot if it isn't in one already. Must be called on the thread drawing the
+     * faces.
+     *
+     * @param index face index as returned by {@link #getFaceIndex(int, int)}.
+     * @return the top of the face's slot in {@link #getSlots()}.
+     */
+    public int getFaceTop(int index) {
+        if (!mStarted)
+            start();
+
+        int slot = 0;
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            if (mSlotFaces[i] == index) {
+                slot = i;
+                break;
+            }
+            if (mSlotUses[i] < mSlotUses[slot])
+                slot = i;
+        }
+        int top = slot * mHeight;
+        if (mSlotFaces[slot] != index) {
+            if (mSlots == null) {
+                mSlots = Bitmap.createBitmap(mWidth, mHeight * SLOT_COUNT, Bitmap.Config.ALPHA_8);
+                mCanvas.setBitmap(mSlots);
+            }
+            fillSlot(index, top);
+            mSlotFaces[slot] = index;
+        }
+        mSlotUses[slot] = ++mUses;
+        return top;
+    }
+
+    /**
+     * @return the bitmap holding the slots, once a face was put in one.
+     */
+    public Bitmap getSlots() {
+        return mSlots;
+    }
+
+    private void fillSlot(int index, int top) {
+        Canvas canvas = mCanvas;
+        ClockFaceAtlasFile file = mFile;
+        if (file != null) {
+            if (mFileFace == null) {
+                mFileFace = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ALPHA_8);
+                mCopyPaint = new Paint();
+                mCopyPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+            }
+            file.copyFace(index, mFileFace);
+            canvas.drawBitmap(mFileFace, 0, top, mCopyPaint);
+            return;
+        }
+
+        // The mask is drawn opaque, the real color is applied when it's blitted.
+        if (mRenderer == null) {
+            mRenderer = newRenderer(mStyle);
+            mRenderer.setBounds(0, 0, mWidth, mHeight);
+        }
+        mRenderer.setTime(index / 60, index % 60);
+        canvas.save();
+        canvas.clipRect(0, top, mWidth, top + mHeight);
+        canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        canvas.translate(0, top);
+        mRenderer.drawFace(canvas);
+        canvas.restore();
+    }
+
+    private void start() {
+        mStarted = true;
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                mFile = ClockFaceAtlasFile.map(mStyle, mWidth, mHeight);
+            }
+        });
+    }
+
+    static ClockDrawable newRenderer(int style) {
+        ClockDrawable renderer = new ClockDrawable(style, Color.BLACK, 0, 0);
+        renderer.mAtlasEnabled = false;
+        return renderer;
+    }
+
+    /* Only maps files, which is quick, so one thread is enough. */
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ClockFaceAtlas");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        return sExecutor;
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.germainz.dynamicalarmicon;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Environment;
+import android.util.Log;
+import android.util.SparseIntArray;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Clock face atlases written to files by the settings app and memory-mapped by SystemUI.
+ * <p/>
+ * Each file holds the {@link ClockFaceAtlas#FACE_COUNT} ALPHA_8 masks of one style at one pixel size,
+ * after a header of 8 ints: magic, format version, style, thin stroke flag, width, height, bytes per
+ * row and face count. The masks don't depend on the clock color, so files only need to be written
+ * once per style and size. Faces are square, see {@link ClockFaceAtlas#getFaceWidth(int, int)}, so
+ * the files only depend on the icon heights. SystemUI maps them read-only, so the pixels live in the
+ * page cache instead of its heap and nothing has to be rendered at startup.
+ */
+public class ClockFaceAtlasFile {
+    private static final String TAG = "DynamicAlarmIcon";
+    private static final int MAGIC = 0x44414941;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 8 * 4;
+
+    /* Sizes of the status bar and status bar header icons, in dp. */
+    public static final int STATUS_BAR_ICON_DP = 20;
+    public static final int HEADER_ICON_DP = 18;
+
+    /* Writes the files one run at a time, however often the settings are opened. */
+    private static ExecutorService sWriter;
+    /* Bytes per row of ALPHA_8 bitmaps by width, guarded by itself. */
+    private static final SparseIntArray sRowBytes = new SparseIntArray();
+
+    private final ByteBuffer mBuffer;
+    private final int mFaceBytes;
+
+    private ClockFaceAtlasFile(ByteBuffer buffer, int faceBytes) {
+        mBuffer = buffer;
+        mFaceBytes = faceBytes;
+    }
+
+    /**
+     * Runs {@link #writeAll(Context)} on a background thread, after any earlier run finished.
+     */
+    public static synchronized void writeAllAsync(final Context context) {
+        if (sWriter == null) {
+            sWriter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ClockFaceAtlasFile");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        sWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeAll(context);
+            }
+        });
+    }
+
+    /**
+     * Writes the files of every style at the status bar and header icon sizes, unless they're
+     * already up to date. Does file I/O and renders up to thousands of faces, so don't call this on
+     * the UI thread.
+     */
+    public static void writeAll(Context context) {
+        float density = Resources.getSystem().getDisplayMetrics().density;
+        int[] sizes = {Math.round(STATUS_BAR_ICON_DP * density), Math.round(HEADER_ICON_DP * density)};
+        int[] styles = {Config.CLOCK_STYLE_AOSP, Config.CLOCK_STYLE_TOUCHWIZ};
+        for (int style : styles) {
+            for (int size : sizes) {
+                File file = new File(context.getFilesDir(), getFileName(style, size, size));
+                try {
+                    if (!isUpToDate(file, style, size, size))
+                        write(file, style, size, size);
+                } catch (IOException e) {
+                    Log.w(TAG, "Can't write " + file, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Maps the file SystemUI needs for the given style and size. Does file I/O, so don't call this on
+     * the UI thread.
+     *
+     * @return the file, or null if it's missing, outdated or unreadable.
+     */
+    static ClockFaceAtlasFile map(int style, int width, int height) {
+        File file = new File(Environment.getDataDirectory(),
+                "data/" + Config.PACKAGE_NAME + "/files/" + getFileName(style, width, height));
+        if (!file.canRead())
+            return null;
+        FileInputStream input = null;
+        try {
+            input = new FileInputStream(file);
+            FileChannel channel = input.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (channel.size() != getFileSize(width, height)
+                    || !checkHeader(buffer.getInt(0), buffer.getInt(4), buffer.getInt(8), buffer.getInt(12),
+                    buffer.getInt(16), buffer.getInt(20), buffer.getInt(24), buffer.getInt(28), style, width, height))
+                return null;
+            // The mapping stays valid after the channel is closed.
+            return new ClockFaceAtlasFile(buffer, buffer.getInt(24) * height);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            close(input);
+        }
+    }
+
+    /**
+     * Copies a face into an ALPHA_8 bitmap of the file's size. Moves the buffer's position, so only
+     * one thread may copy faces, like {@link ClockFaceAtlas} does.
+     */
+    void copyFace(int index, Bitmap face) {
+        ByteBuffer source = mBuffer;
+        int offset = HEADER_SIZE + index * mFaceBytes;
+        source.limit(offset + mFaceBytes);
+        source.position(offset);
+        face.copyPixelsFromBuffer(source);
+    }
+
+    private static String getFileName(int style, int width, int height) {
+        return "clock_faces_" + style + "_" + width + "x" + height;
+    }
+
+    private static long getFileSize(int width, int height) {
+        return HEADER_SIZE + (long) getRowBytes(width) * height * ClockFaceAtlas.FACE_COUNT;
+    }
+
+    /**
+     * @return the bytes per row of ALPHA_8 bitmaps of the given width, which may be padded.
+     */
+    private static int getRowBytes(int width) {
+        synchronized (sRowBytes) {
+            int rowBytes = sRowBytes.get(width, -1);
+            if (rowBytes < 0) {
+                // Padding only depends on the width.
+                Bitmap bitmap = Bitmap.createBitmap(width, 1, Bitmap.Config.ALPHA_8);
+                rowBytes = bitmap.getRowBytes();
+                bitmap.recycle();
+                sRowBytes.put(width, rowBytes);
+            }
+            return rowBytes;
+        }
+    }
+
+    private static boolean checkHeader(int magic, int version, int style, int thinStroke, int width, int height,
+                                       int rowBytes, int faceCount, int expectedStyle, int expectedWidth,
+                                       int expectedHeight) {
+        return magic == MAGIC && version == FORMAT_VERSION && style == expectedStyle
+                && thinStroke == (Config.IS_LOLLIPOP_OR_ABOVE ? 0 : 1) && width == expectedWidth
+                && height == expectedHeight && rowBytes == getRowBytes(width)
+                && faceCount == ClockFaceAtlas.FACE_COUNT;
+    }
+
+    private static boolean isUpToDate(File file, int style, int width, int height) {
+        if (file.length() != getFileSize(width, height))
+            return false;
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new FileInputStream(file));
+            return checkHeader(input.readInt(), input.readInt(), input.readInt(), input.readInt(), input.readInt(),
+                    input.readInt(), input.readInt(), input.readInt(), style, width, height);
+        } catch (IOException e) {
+            return false;
+        } finally {
+            close(input);
+        }
+    }
+
+    private static void write(File file, int style, int width, int height) throws IOException {
+        // Written next to the file and renamed over it, so SystemUI never maps a partial file. The
+        // name is unique, so a concurrent writer can't write to it as well.
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        Bitmap face = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+        ByteBuffer pixels = ByteBuffer.allocate(face.getByteCount());
+        ClockDrawable renderer = ClockFaceAtlas.newRenderer(style);
+        renderer.setBounds(0, 0, width, height);
+        Canvas canvas = new Canvas(face);
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(style);
+            output.writeInt(Config.IS_LOLLIPOP_OR_ABOVE ? 0 : 1);
+            output.writeInt(width);
+            output.writeInt(height);
+            output.writeInt(face.getRowBytes());
+            output.writeInt(ClockFaceAtlas.FACE_COUNT);
+            for (int i = 0; i < ClockFaceAtlas.FACE_COUNT; i++) {
+                face.eraseColor(Color.TRANSPARENT);
+                renderer.setTime(i / 60, i % 60);
+                renderer.drawFace(canvas);
+                pixels.clear();
+                face.copyPixelsToBuffer(pixels);
+                output.write(pixels.array(), 0, pixels.position());
+            }
+            output.close();
+            output = null;
+        } finally {
+            if (output != null) {
+                close(output);
+                temp.delete();
+            }
+            face.recycle();
+        }
+        if (!temp.setReadable(true, false) || !temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Can't replace " + file);
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable == null)
+            return;
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
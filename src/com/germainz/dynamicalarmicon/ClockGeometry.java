@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.germainz.dynamicalarmicon;
+
+/**
+ * Where every part of the clock icon goes for a given style and size.
+ * <p/>
+ * Plain Java on purpose (no android.* imports), so the clock math can be run and measured on any JVM.
+ * Angles are in degrees, clockwise from 12 o'clock; arc angles are clockwise from 3 o'clock like
+ * Canvas.drawArc(…). Call {@link #set(int, boolean, int, int)} before reading anything.
+ */
+public final class ClockGeometry {
+    /* Same values as Config.CLOCK_STYLE_*, which can't be used here without loading android.os.Build. */
+    public static final int STYLE_AOSP = 0;
+    public static final int STYLE_TOUCHWIZ = 1;
+
+    private static final double LEG_ANGLE = Math.toRadians(52);
+    private static final float LEG_COS = (float) Math.cos(LEG_ANGLE);
+    private static final float LEG_SIN = (float) Math.sin(LEG_ANGLE);
+    private static final float LEG_LENGTH = 1.45f;
+
+    private static final float[] AOSP_BELL_ANGLES = {200, 300};
+    private static final float[] TOUCHWIZ_BELL_ANGLES = {212, 298};
+
+    private int mStyle;
+    private float mCenterX;
+    private float mCenterY;
+    private float mRadius;
+    private float mCircleStrokeWidth;
+    private float mDotRadius;
+    private float mHandStrokeWidth;
+    private float mHourHandLength;
+    private float mMinuteHandLength;
+    private float mBellRadius;
+    private float mBellStrokeWidth;
+    private float[] mBellStartAngles;
+    private float mBellSweepAngle;
+    private float mLegX;
+    private float mLegY;
+
+    /**
+     * @param thinStroke AOSP only: use the thinner outline of pre-Lollipop releases.
+     */
+    public void set(int style, boolean thinStroke, int width, int height) {
+        float faceHeight = height * .9f;
+        mStyle = style;
+        mCenterX = width / 2f;
+        mCenterY = faceHeight / 2 + faceHeight / 10;
+        if (style == STYLE_TOUCHWIZ) {
+            mRadius = faceHeight / 3.55f;
+            mCircleStrokeWidth = mRadius / 3.4f;
+            // Drawn as a square point, see getDotRadius().
+            mDotRadius = 0;
+            mHandStrokeWidth = mRadius / 4f;
+            mHourHandLength = mRadius * .5f;
+            mMinuteHandLength = mRadius * .7f;
+            mBellRadius = mRadius * 1.5f;
+            mBellStrokeWidth = mRadius / 3.0f;
+            mBellStartAngles = TOUCHWIZ_BELL_ANGLES;
+            mBellSweepAngle = 30;
+            mLegX = mRadius * LEG_COS;
+            mLegY = mRadius * LEG_SIN;
+        } else {
+            mRadius = faceHeight / 3;
+            mCircleStrokeWidth = mRadius / (thinStroke ? 7f : 4f);
+            mDotRadius = mRadius / 20f;
+            mHandStrokeWidth = mCircleStrokeWidth;
+            mHourHandLength = mRadius * .5f;
+            mMinuteHandLength = mRadius * .8f;
+            mBellRadius = mRadius * 1.3f;
+            mBellStrokeWidth = mCircleStrokeWidth;
+            mBellStartAngles = AOSP_BELL_ANGLES;
+            mBellSweepAngle = 40;
+            mLegX = 0;
+            mLegY = 0;
+        }
+    }
+
+    public static int getHourAngle(int hours, int minutes) {
+        return (int) ((hours + minutes / 60f) * 360 / 12);
+    }
+
+    public static int getMinuteAngle(int minutes) {
+        return minutes * 360 / 60;
+    }
+
+    public int getStyle() {
+        return mStyle;
+    }
+
+    public float getCenterX() {
+        return mCenterX;
+    }
+
+    public float getCenterY() {
+        return mCenterY;
+    }
+
+    public float getRadius() {
+        return mRadius;
+    }
+
+    public float getCircleStrokeWidth() {
+        return mCircleStrokeWidth;
+    }
+
+    /**
+     * @return the radius of the stroked middle dot, or 0 if it is a square point as wide as the
+     * circle's stroke (TouchWiz).
+     */
+    public float getDotRadius() {
+        return mDotRadius;
+    }
+
+    public float getHandStrokeWidth() {
+        return mHandStrokeWidth;
+    }
+
+    public float getHourHandLength() {
+        return mHourHandLength;
+    }
+
+    public float getMinuteHandLength() {
+        return mMinuteHandLength;
+    }
+
+    /**
+     * @param angle  see {@link #getHourAngle(int, int)} and {@link #getMinuteAngle(int)}.
+     * @param length see {@link #getHourHandLength()} and {@link #getMinuteHandLength()}.
+     * @return where the hand ends, it starts at the center.
+     */
+    public float getHandEndX(int angle, float length) {
+        return mCenterX + length * (float) Math.sin(Math.toRadians(angle));
+    }
+
+    public float getHandEndY(int angle, float length) {
+        return mCenterY - length * (float) Math.cos(Math.toRadians(angle));
+    }
+
+    public float getBellRadius() {
+        return mBellRadius;
+    }
+
+    public float getBellStrokeWidth() {
+        return mBellStrokeWidth;
+    }
+
+    public int getBellCount() {
+        return mBellStartAngles.length;
+    }
+
+    public float getBellStartAngle(int bell) {
+        return mBellStartAngles[bell];
+    }
+
+    public float getBellSweepAngle() {
+        return mBellSweepAngle;
+    }
+
+    /**
+     * @return the angle halfway through the bell's arc, which its chord is perpendicular to.
+     */
+    public float getBellMidAngle(int bell) {
+        return mBellStartAngles[bell] + mBellSweepAngle / 2;
+    }
+
+    /**
+     * Bells are filled up to the chord between the ends of their arc, like a FILL_AND_STROKE arc.
+     *
+     * @return the distance from the center to that chord.
+     */
+    public float getBellChordDistance() {
+        return mBellRadius * (float) Math.cos(Math.toRadians(mBellSweepAngle / 2));
+    }
+
+    public boolean hasLegs() {
+        return mStyle == STYLE_TOUCHWIZ;
+    }
+
+    /**
+     * @param side 1 for the right leg, -1 for the left one (at 180 - 52°).
+     */
+    public float getLegStartX(int side) {
+        return mCenterX + side * mLegX;
+    }
+
+    public float getLegStartY() {
+        return mCenterY + mLegY;
+    }
+
+    public float getLegEndX(int side) {
+        return mCenterX + side * mLegX * LEG_LENGTH;
+    }
+
+    public float getLegEndY() {
+        return mCenterY + mLegY * LEG_LENGTH;
+    }
+
+    /**
+     * The legs use the bells' stroke.
+     */
+    public float getLegStrokeWidth() {
+        return mBellStrokeWidth;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.germainz.dynamicalarmicon;
+
+import android.graphics.drawable.Drawable;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+
+/**
+ * Time, style and color shared by every {@link ClockDrawable} created from it.
+ * <p/>
+ * Changes are pushed to the attached drawables, and only invalidate them if something visible changed.
+ * Not thread-safe, meant to be used from the UI thread.
+ */
+public class ClockState extends Drawable.ConstantState {
+    int mStyle;
+    int mColor;
+    int mHourAngle;
+    int mMinuteAngle;
+    int mFaceIndex;
+    private final ArrayList<WeakReference<ClockDrawable>> mDrawables = new ArrayList<WeakReference<ClockDrawable>>();
+
+    public ClockState(int style, int color, int hours, int minutes) {
+        mStyle = style;
+        mColor = color;
+        mHourAngle = ClockGeometry.getHourAngle(hours, minutes);
+        mMinuteAngle = ClockGeometry.getMinuteAngle(minutes);
+        mFaceIndex = ClockFaceAtlas.getFaceIndex(hours, minutes);
+    }
+
+    @Override
+    public ClockDrawable newDrawable() {
+        return new ClockDrawable(this);
+    }
+
+    @Override
+    public int getChangingConfigurations() {
+        return 0;
+    }
+
+    public int getStyle() {
+        return mStyle;
+    }
+
+    public void setTime(int hours, int minutes) {
+        // Times 12 hours apart look the same.
+        int faceIndex = ClockFaceAtlas.getFaceIndex(hours, minutes);
+        if (faceIndex == mFaceIndex)
+            return;
+        mHourAngle = ClockGeometry.getHourAngle(hours, minutes);
+        mMinuteAngle = ClockGeometry.getMinuteAngle(minutes);
+        mFaceIndex = faceIndex;
+        for (int i = mDrawables.size() - 1; i >= 0; i--) {
+            ClockDrawable drawable = mDrawables.get(i).get();
+            if (drawable == null)
+                mDrawables.remove(i);
+            else
+                drawable.invalidateSelf();
+        }
+    }
+
+    public void setStyle(int style) {
+        if (style == mStyle)
+            return;
+        mStyle = style;
+        for (int i = mDrawables.size() - 1; i >= 0; i--) {
+            ClockDrawable drawable = mDrawables.get(i).get();
+            if (drawable == null)
+                mDrawables.remove(i);
+            else
+                drawable.onStyleChanged();
+        }
+    }
+
+    public void setColor(int color) {
+        if (color == mColor)
+            return;
+        mColor = color;
+        for (int i = mDrawables.size() - 1; i >= 0; i--) {
+            ClockDrawable drawable = mDrawables.get(i).get();
+            if (drawable == null)
+                mDrawables.remove(i);
+            else
+                drawable.onColorChanged();
+        }
+    }
+
+    /**
+     * @return a drawable of this state that no view shows anymore, or a new one. Views clear the
+     * callback of the drawable they let go of, and a drawable can't be shared by views since they'd
+     * fight over its bounds.
+     */
+    public ClockDrawable obtainDrawable() {
+        for (int i = mDrawables.size() - 1; i >= 0; i--) {
+            ClockDrawable drawable = mDrawables.get(i).get();
+            if (drawable == null)
+                mDrawables.remove(i);
+            else if (drawable.getCallback() == null)
+                return drawable;
+        }
+        return newDrawable();
+    }
+
+    void attach(ClockDrawable drawable) {
+        // Drop the collected drawables first, so the list only holds as many as are alive.
+        for (int i = mDrawables.size() - 1; i >= 0; i--) {
+            if (mDrawables.get(i).get() == null)
+                mDrawables.remove(i);
+        }
+        mDrawables.add(new WeakReference<ClockDrawable>(drawable));
+    }
+}
@@ -17,6 +17,7 @@
 package com.germainz.dynamicalarmicon;
 
 import android.content.Context;
+import android.content.Intent;
 import android.content.SharedPreferences;
 import android.graphics.Color;
 
@@ -29,21 +30,43 @@ public class Config {
     public static final boolean IS_KITKAT_OR_ABOVE = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
     public static final boolean IS_JELLYBEANMR2_OR_ABOVE = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
     public static final boolean IS_JELLYBEAN_OR_ABOVE = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+    public static final int CLOCK_STYLE_AOSP = 0;
+    public static final int CLOCK_STYLE_TOUCHWIZ = 1;
+    /* One clock app per line, optionally followed by how to find the alarm time in its notifications. */
+    public static final String DEFAULT_CLOCK_PACKAGES = "com.android.deskclock\n"
+            + "com.google.android.deskclock\n"
+            + "com.mobitobi.android.gentlealarmtrial\n"
+            + "com.mobitobi.android.gentlealarm";
+
+    public static final String ACTION_CONFIG_CHANGED = "com.germainz.dynamicalarmicon.CONFIG_CHANGED";
+    /* Signature permission held by the settings app, needed to send ACTION_CONFIG_CHANGED. */
+    public static final String PERMISSION_CHANGE_CONFIG = "cz.babi.android.xposed.dynamicalarmicon2.permission.CHANGE_CONFIG";
+    private static final String SYSTEMUI_PACKAGE = "com.android.systemui";
+    private static final String EXTRA_STYLE = "style";
+    private static final String EXTRA_COLOR = "color";
+    private static final String EXTRA_VERSION = "version";
+    private static final String EXTRA_CLOCK_PACKAGES = "clock_packages";
 
     private static Config mInstance;
     private XSharedPreferences mXPreferences = null;
     private SharedPreferences mPreferences = null;
-    private static final String PACKAGE_NAME = "cz.babi.android.xposed.dynamicalarmicon2";
+    private Context mContext;
+    private volatile ConfigSnapshot mSnapshot;
+    static final String PACKAGE_NAME = "cz.babi.android.xposed.dynamicalarmicon2";
     private static final String PREFS = PACKAGE_NAME + "_preferences";
     private static final String PREF_CLOCK_STYLE = "pref_clock_style";
     private static final String PREF_CLOCK_COLOR = "pref_clock_color";
+    private static final String PREF_CLOCK_PACKAGES = "pref_clock_packages";
+    private static final String PREF_CONFIG_VERSION = "pref_config_version";
 
     public Config() {
         mXPreferences = new XSharedPreferences(PACKAGE_NAME, PREFS);
         mXPreferences.makeWorldReadable();
+        mSnapshot = readSnapshot();
     }
 
     private Config(Context context) {
+        mContext = context;
         mPreferences = context.getSharedPreferences(PREFS, Context.MODE_WORLD_READABLE);
     }
 
@@ -61,8 +84,92 @@ public class Config {
         return getInt(PREF_CLOCK_COLOR, Color.WHITE);
     }
 
+    public String getClockPackages() {
+        return getString(PREF_CLOCK_PACKAGES, DEFAULT_CLOCK_PACKAGES);
+    }
+
+    public ConfigSnapshot getSnapshot() {
+        if (mSnapshot == null)
+            mSnapshot = readSnapshot();
+        return mSnapshot;
+    }
+
+    /**
+     * Re-reads the preferences if their file changed since they were last read. The file always
+     * wins, even if its version went back, e.g. after the settings app's data was cleared.
+     *
+     * @return true if a different snapshot was loaded.
+     */
+    public boolean reloadIfChanged() {
+        if (mXPreferences == null || !mXPreferences.hasFileChanged())
+            return false;
+        mXPreferences.reload();
+        return setSnapshot(readSnapshot());
+    }
+
+    /**
+     * Applies the snapshot sent with an {@link #ACTION_CONFIG_CHANGED} broadcast.
+     *
+     * @return true if it's a different one than the current one.
+     */
+    public boolean update(Intent intent) {
+        String clockPackages = intent.getStringExtra(EXTRA_CLOCK_PACKAGES);
+        return setSnapshot(new ConfigSnapshot(intent.getIntExtra(EXTRA_STYLE, CLOCK_STYLE_AOSP),
+                intent.getIntExtra(EXTRA_COLOR, Color.WHITE),
+                clockPackages != null ? clockPackages : DEFAULT_CLOCK_PACKAGES,
+                intent.getLongExtra(EXTRA_VERSION, 0)));
+    }
+
+    /**
+     * Saves the new settings together with a new version and tells SystemUI about them, so it doesn't
+     * need to be restarted.
+     */
+    public void setConfig(int style, int color, String clockPackages) {
+        // Versions are only compared for equality. Based on the clock, so they don't repeat one SystemUI
+        // still has after the preferences were cleared.
+        long version = Math.max(mPreferences.getLong(PREF_CONFIG_VERSION, 0) + 1, System.currentTimeMillis());
+        // Written in one go so SystemUI never reads a version with only some of its values.
+        mPreferences.edit()
+                .putString(PREF_CLOCK_STYLE, Integer.toString(style))
+                .putInt(PREF_CLOCK_COLOR, color)
+                .putString(PREF_CLOCK_PACKAGES, clockPackages)
+                .putLong(PREF_CONFIG_VERSION, version)
+                .apply();
+        mSnapshot = new ConfigSnapshot(style, color, clockPackages, version);
+        mContext.sendBroadcast(new Intent(ACTION_CONFIG_CHANGED)
+                .setPackage(SYSTEMUI_PACKAGE)
+                .putExtra(EXTRA_STYLE, style)
+                .putExtra(EXTRA_COLOR, color)
+                .putExtra(EXTRA_CLOCK_PACKAGES, clockPackages)
+                .putExtra(EXTRA_VERSION, version));
+    }
+
+    public void setClockStyle(int style) {
+        setConfig(style, getClockColor(), getClockPackages());
+    }
+
     public void setClockColor(int color) {
-        mPreferences.edit().putInt(PREF_CLOCK_COLOR, color).apply();
+        setConfig(getClockStyle(), color, getClockPackages());
+    }
+
+    public void setClockPackages(String clockPackages) {
+        setConfig(getClockStyle(), getClockColor(), clockPackages);
+    }
+
+    private ConfigSnapshot readSnapshot() {
+        return new ConfigSnapshot(getClockStyle(), getClockColor(), getClockPackages(),
+                getLong(PREF_CONFIG_VERSION, 0));
+    }
+
+    /**
+     * A broadcast and the file carry the same values for a version, so a version that's already
+     * applied is skipped. Any other version is taken, older or not.
+     */
+    private synchronized boolean setSnapshot(ConfigSnapshot snapshot) {
+        if (mSnapshot != null && snapshot.version == mSnapshot.version)
+            return false;
+        mSnapshot = snapshot;
+        return true;
     }
 
     private String getString(String key, String defaultValue) {
@@ -82,4 +189,13 @@ public class Config {
             returnResult = mXPreferences.getInt(key, defaultValue);
         return returnResult;
     }
+
+    private long getLong(String key, long defaultValue) {
+        long returnResult = defaultValue;
+        if (mPreferences != null)
+            returnResult = mPreferences.getLong(key, defaultValue);
+        else if (mXPreferences != null)
+            returnResult = mXPreferences.getLong(key, defaultValue);
+        return returnResult;
+    }
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.germainz.dynamicalarmicon;
+
+/**
+ * Immutable, already parsed copy of the settings SystemUI needs.
+ */
+public final class ConfigSnapshot {
+    public final int style;
+    public final int color;
+    /** Clock apps and their rules, see Config.DEFAULT_CLOCK_PACKAGES. */
+    public final String clockPackages;
+    /** Changed by Preferences on every change, so updates that are already applied can be skipped. */
+    public final long version;
+
+    public ConfigSnapshot(int style, int color, String clockPackages, long version) {
+        this.style = style;
+        this.color = color;
+        this.clockPackages = clockPackages;
+        this.version = version;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.germainz.dynamicalarmicon;
+
+/**
+ * Trace sections and counters for systrace/Perfetto, so the time spent in the hooks shows up under
+ * their own names instead of as part of the hooked SystemUI methods.
+ * <p/>
+ * Off by default. While it's off, {@link #begin(String)} and {@link #counter(String, int)} only read
+ * one volatile field. Sections must be closed with the sink returned by begin(…), so switching
+ * tracing in the middle of a section can't unbalance it:
+ * <pre>
+ * HookTrace.Sink sink = HookTrace.begin("name");
+ * try {
+ *     ...
+ * } finally {
+ *     HookTrace.end(sink);
+ * }
+ * </pre>
+ * Plain Java (no android.* imports), so it's tested on the JVM with a fake sink. On a device it's
+ * switched with {@link AndroidTraceSink#setEnabled(boolean)}.
+ */
+public final class HookTrace {
+    /* Trace section names are limited to 127 characters. */
+    private static final String PREFIX = "DynamicAlarmIcon:";
+
+    public interface Sink {
+        void beginSection(String name);
+
+        void endSection();
+
+        void counter(String name, int value);
+    }
+
+    /* Null while tracing is off. */
+    private static volatile Sink sSink;
+
+    private HookTrace() {
+    }
+
+    /**
+     * @return the section name for the given part of the module, with the module's prefix.
+     */
+    public static String name(String name) {
+        return PREFIX + name;
+    }
+
+    public static boolean isEnabled() {
+        return sSink != null;
+    }
+
+    /**
+     * Traces to the given sink, or turns tracing off if it's null.
+     */
+    public static void setSink(Sink sink) {
+        sSink = sink;
+    }
+
+    /**
+     * @param name see {@link #name(String)}, shouldn't be built on every call.
+     * @return the sink to pass to {@link #end(Sink)}, null if tracing is off.
+     */
+    public static Sink begin(String name) {
+        Sink sink = sSink;
+        if (sink != null)
+            sink.beginSection(name);
+        return sink;
+    }
+
+    public static void end(Sink sink) {
+        if (sink != null)
+            sink.endSection();
+    }
+
+    public static void counter(String name, int value) {
+        Sink sink = sSink;
+        if (sink != null)
+            sink.counter(name, value);
+    }
+}
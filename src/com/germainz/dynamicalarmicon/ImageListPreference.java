@@ -21,7 +21,7 @@ import android.app.Activity;
 import android.app.AlertDialog.Builder;
 import android.content.Context;
 import android.content.res.Resources;
-import android.content.res.TypedArray;
+import android.graphics.drawable.Drawable;
 import android.preference.ListPreference;
 import android.util.AttributeSet;
 import android.view.LayoutInflater;
@@ -33,37 +33,29 @@ import android.widget.ImageView;
 import android.widget.ListAdapter;
 import cz.babi.android.xposed.dynamicalarmicon2.R;
 
+/**
+ * A ListPreference of the clock styles, each shown with a preview drawn by {@link ClockDrawable}
+ * in the current clock color.
+ */
 public class ImageListPreference extends ListPreference {
-    private int[] mResourceIds = null;
-    private int mRadioDrawableId;
+    /* The time shown by the previews. */
+    private static final int PREVIEW_HOURS = 10;
+    private static final int PREVIEW_MINUTES = 8;
+
+    /* One preview state per entry, kept for the preference's lifetime and recolored when needed.
+     * Each row draws its own drawable of it, since views can't share a drawable. */
+    private ClockState[] mPreviews;
+    private int mPreviewColor;
+    private Drawable.ConstantState mRadioDrawableState;
 
     /**
-     * Constructor of the ImageListPreference. Initializes the custom images.
+     * Constructor of the ImageListPreference.
      *
      * @param context application context.
      * @param attrs   custom xml attributes.
      */
     public ImageListPreference(Context context, AttributeSet attrs) {
         super(context, attrs);
-        TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.ImageListPreference);
-
-        String[] imageNames = context.getResources().getStringArray(
-                typedArray.getResourceId(typedArray.getIndexCount() - 1, -1));
-
-        mResourceIds = new int[imageNames.length];
-
-        for (int i = 0; i < imageNames.length; i++) {
-            String imageName = imageNames[i].substring(imageNames[i].lastIndexOf('/') + 1,
-                    imageNames[i].lastIndexOf('.'));
-            mResourceIds[i] = context.getResources().getIdentifier(imageName, "drawable", context.getPackageName());
-        }
-
-        typedArray.recycle();
-
-        // in order to use the holo themed radio button we must get the id
-        // from the system resources and then get the drawable for that id
-        // Because it uses reflection twice, we'll store this value for future use.
-        mRadioDrawableId = Resources.getSystem().getIdentifier("btn_radio_holo_dark", "drawable", "android");
     }
 
     /**
@@ -73,16 +65,51 @@ public class ImageListPreference extends ListPreference {
         int index = findIndexOfValue(getSharedPreferences().getString(getKey(), "1"));
 
         ListAdapter listAdapter = new ImageArrayAdapter(getContext(), R.layout.image_list_item, getEntries(),
-                mResourceIds, index);
+                getPreviews(), index);
 
         // Order matters.
         builder.setAdapter(listAdapter, this);
         super.onPrepareDialogBuilder(builder);
     }
 
+    private ClockState[] getPreviews() {
+        int color = Config.getInstance(getContext()).getClockColor();
+        if (mPreviews == null) {
+            CharSequence[] styles = getEntryValues();
+            mPreviews = new ClockState[styles.length];
+            for (int i = 0; i < styles.length; i++)
+                mPreviews[i] = new ClockState(Integer.parseInt(styles[i].toString()), color, PREVIEW_HOURS,
+                        PREVIEW_MINUTES);
+        } else if (color != mPreviewColor) {
+            for (ClockState preview : mPreviews)
+                preview.setColor(color);
+        }
+        mPreviewColor = color;
+        return mPreviews;
+    }
+
+    private Drawable getRadioDrawable() {
+        // in order to use the holo themed radio button we must get the id
+        // from the system resources and then get the drawable for that id
+        // Because it uses reflection twice, we'll keep its constant state and only create new
+        // drawables from it, one per row since each row has its own checked state.
+        if (mRadioDrawableState == null) {
+            Resources resources = Resources.getSystem();
+            int id = resources.getIdentifier("btn_radio_holo_dark", "drawable", "android");
+            mRadioDrawableState = resources.getDrawable(id).getConstantState();
+        }
+        return mRadioDrawableState.newDrawable();
+    }
+
+    private static class ViewHolder {
+        ImageView imageView;
+        CheckedTextView checkedTextView;
+        ClockDrawable preview;
+    }
+
     public class ImageArrayAdapter extends ArrayAdapter<CharSequence> {
         private int index = 0;
-        private int[] resourceIds = null;
+        private ClockState[] previews = null;
 
         /**
          * ImageArrayAdapter constructor.
@@ -90,33 +117,43 @@ public class ImageListPreference extends ListPreference {
          * @param context            the context.
          * @param textViewResourceId resource id of the text view.
          * @param objects            to be displayed.
-         * @param ids                resource id of the images to be displayed.
+         * @param images             states of the previews to be displayed.
          * @param i                  index of the previous selected item.
          */
-        public ImageArrayAdapter(Context context, int textViewResourceId, CharSequence[] objects, int[] ids, int i) {
+        public ImageArrayAdapter(Context context, int textViewResourceId, CharSequence[] objects, ClockState[] images,
+                                 int i) {
             super(context, textViewResourceId, objects);
 
             index = i;
-            resourceIds = ids;
+            previews = images;
         }
 
         /**
          * {@inheritDoc}
          */
         public View getView(int position, View convertView, ViewGroup parent) {
-            LayoutInflater inflater = ((Activity) getContext()).getLayoutInflater();
-            View row = inflater.inflate(R.layout.image_list_item, parent, false);
-
-            ImageView imageView = (ImageView) row.findViewById(R.id.image);
-            imageView.setImageResource(resourceIds[position]);
-
-            CheckedTextView checkedTextView = (CheckedTextView) row.findViewById(R.id.check);
-
-            checkedTextView.setText(getItem(position));
-            checkedTextView.setCheckMarkDrawable(Resources.getSystem().getDrawable(mRadioDrawableId));
-
-            if (position == index)
-                checkedTextView.setChecked(true);
+            View row = convertView;
+            ViewHolder holder;
+            if (row == null) {
+                LayoutInflater inflater = ((Activity) getContext()).getLayoutInflater();
+                row = inflater.inflate(R.layout.image_list_item, parent, false);
+                holder = new ViewHolder();
+                holder.imageView = (ImageView) row.findViewById(R.id.image);
+                holder.checkedTextView = (CheckedTextView) row.findViewById(R.id.check);
+                holder.checkedTextView.setCheckMarkDrawable(getRadioDrawable());
+                row.setTag(holder);
+            } else {
+                holder = (ViewHolder) row.getTag();
+            }
+
+            if (holder.preview == null || holder.preview.getConstantState() != previews[position]) {
+                holder.preview = previews[position].newDrawable();
+                // A preview only shows one time, so it doesn't need the atlas of every face.
+                holder.preview.mAtlasEnabled = false;
+                holder.imageView.setImageDrawable(holder.preview);
+            }
+            holder.checkedTextView.setText(getItem(position));
+            holder.checkedTextView.setChecked(position == index);
 
             return row;
         }
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.germainz.dynamicalarmicon;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.util.LruCache;
+
+/**
+ * LRU cache of rendered notification large icons, bounded by their size in bytes.
+ * <p/>
+ * Clock apps repost the same alarm notification many times, so each (time, style, color, size)
+ * is only rendered once. Cached bitmaps may still be referenced by RemoteViews, so evicted ones
+ * are simply dropped, never recycled.
+ * <p/>
+ * Until an icon is rendered, {@link #getPlaceholder(int, int, int, int, int, int)} stands in for it.
+ */
+public class LargeIconCache {
+    public static final int DEFAULT_MAX_BYTES = 1024 * 1024;
+    private static final int MAX_SIZE = 1 << 10;
+
+    private final LruCache<Long, Bitmap> mCache;
+    private final Canvas mCanvas = new Canvas();
+    private ClockDrawable mRenderer;
+    /* Draws the placeholders, at the status bar icon size so they share its atlas. */
+    private ClockDrawable mPlaceholderRenderer;
+    private final Canvas mPlaceholderCanvas = new Canvas();
+
+    public LargeIconCache(int maxBytes) {
+        mCache = new LruCache<Long, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Returns the icon, rendering it if needed. Safe to call from any thread.
+     */
+    public Bitmap get(int style, int color, int hours, int minutes, int width, int height) {
+        if (width >= MAX_SIZE || height >= MAX_SIZE)
+            return render(style, color, hours, minutes, width, height);
+
+        long key = getKey(style, color, hours, minutes, width, height);
+        Bitmap bitmap = mCache.get(key);
+        if (bitmap == null) {
+            bitmap = render(style, color, hours, minutes, width, height);
+            mCache.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * @return the icon if it's cached, else null. Never renders.
+     */
+    public Bitmap peek(int style, int color, int hours, int minutes, int width, int height) {
+        if (width >= MAX_SIZE || height >= MAX_SIZE)
+            return null;
+        return mCache.get(getKey(style, color, hours, minutes, width, height));
+    }
+
+    /**
+     * Returns a stand-in for an icon that isn't cached yet: the status bar's face, scaled up. It's
+     * blurry but shows the right time, and only costs a blit once the face is in its
+     * {@link ClockFaceAtlas}. Main thread only, like the atlases.
+     */
+    public Bitmap getPlaceholder(int style, int color, int hours, int minutes, int width, int height) {
+        int size = Math.round(ClockFaceAtlasFile.STATUS_BAR_ICON_DP
+                * Resources.getSystem().getDisplayMetrics().density);
+        if (mPlaceholderRenderer == null) {
+            mPlaceholderRenderer = new ClockDrawable(style, color, hours, minutes);
+            mPlaceholderRenderer.mPaint.setFilterBitmap(true);
+        } else {
+            mPlaceholderRenderer.setStyle(style);
+            mPlaceholderRenderer.setColor(color);
+            mPlaceholderRenderer.setTime(hours, minutes);
+        }
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = mPlaceholderCanvas;
+        canvas.setBitmap(bitmap);
+        canvas.save();
+        canvas.scale((float) width / size, (float) height / size);
+        mPlaceholderRenderer.setBounds(0, 0, size, size);
+        mPlaceholderRenderer.draw(canvas);
+        canvas.restore();
+        canvas.setBitmap(null);
+        return bitmap;
+    }
+
+    public void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL)
+            mCache.evictAll();
+        else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+            mCache.trimToSize(mCache.maxSize() / 2);
+    }
+
+    private static long getKey(int style, int color, int hours, int minutes, int width, int height) {
+        return (color & 0xFFFFFFFFL) << 32 | (long) (hours * 60 + minutes) << 21 | (long) style << 20
+                | width << 10 | height;
+    }
+
+    private synchronized Bitmap render(int style, int color, int hours, int minutes, int width, int height) {
+        if (mRenderer == null) {
+            mRenderer = new ClockDrawable(style, color, hours, minutes);
+            // Large icons are too big for an atlas anyway.
+            mRenderer.mAtlasEnabled = false;
+        } else {
+            mRenderer.setStyle(style);
+            mRenderer.setColor(color);
+            mRenderer.setTime(hours, minutes);
+        }
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        mCanvas.setBitmap(bitmap);
+        mRenderer.setBounds(0, 0, width, height);
+        mRenderer.draw(mCanvas);
+        mCanvas.setBitmap(null);
+        return bitmap;
+    }
+}
@@ -22,6 +22,7 @@ import android.content.DialogInterface;
 import android.content.pm.PackageManager;
 import android.graphics.Color;
 import android.os.Bundle;
+import android.preference.EditTextPreference;
 import android.preference.Preference;
 import android.preference.PreferenceActivity;
 import android.text.Editable;
@@ -42,6 +43,7 @@ public class Preferences extends PreferenceActivity {
     private static final String PREF_SHOW_APP_ICON = "pref_show_app_icon";
     private static final String PREF_CLOCK_STYLE = "pref_clock_style";
     private static final String PREF_CLOCK_COLOR = "pref_clock_color";
+    private static final String PREF_CLOCK_PACKAGES = "pref_clock_packages";
     private boolean mTextChanged = false;
 
     @Override
@@ -50,6 +52,8 @@ public class Preferences extends PreferenceActivity {
         getPreferenceManager().setSharedPreferencesMode(MODE_WORLD_READABLE);
         addPreferencesFromResource(R.xml.preferences);
         final Config config = Config.getInstance(this);
+        // Writes the clock faces SystemUI maps instead of rendering them, if they're missing or outdated.
+        ClockFaceAtlasFile.writeAllAsync(getApplicationContext());
 
         final ImageListPreference stylePref = (ImageListPreference) findPreference(PREF_CLOCK_STYLE);
         int style = config.getClockStyle();
@@ -58,6 +62,7 @@ public class Preferences extends PreferenceActivity {
             @Override
             public boolean onPreferenceChange(Preference preference, Object newValue) {
                 stylePref.setSummary(stylePref.getEntries()[stylePref.findIndexOfValue((String) newValue)]);
+                config.setClockStyle(Integer.parseInt((String) newValue));
                 return true;
             }
         });
@@ -141,6 +146,19 @@ public class Preferences extends PreferenceActivity {
             }
         });
 
+        EditTextPreference packagesPref = (EditTextPreference) findPreference(PREF_CLOCK_PACKAGES);
+        // setText(…) writes the preferences, so only when the default isn't stored yet.
+        String clockPackages = config.getClockPackages();
+        if (!clockPackages.equals(packagesPref.getText()))
+            packagesPref.setText(clockPackages);
+        packagesPref.setOnPreferenceChangeListener(new Preference.OnPreferenceChangeListener() {
+            @Override
+            public boolean onPreferenceChange(Preference preference, Object newValue) {
+                config.setClockPackages((String) newValue);
+                return true;
+            }
+        });
+
         Preference prefShowAppIcon = findPreference(PREF_SHOW_APP_ICON);
         prefShowAppIcon.setOnPreferenceChangeListener(new Preference.OnPreferenceChangeListener() {
             @Override
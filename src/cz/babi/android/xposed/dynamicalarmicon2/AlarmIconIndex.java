@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.babi.android.xposed.dynamicalarmicon2;
+
+import android.view.View;
+import android.widget.ImageView;
+import android.widget.LinearLayout;
+
+import java.io.PrintWriter;
+import java.lang.ref.WeakReference;
+
+/**
+ * Keeps track of the alarm_clock status bar icon view, so it doesn't have to be searched for.
+ * <p/>
+ * The view is indexed by the icon add/remove hooks and forgotten when it's detached from the window
+ * (some ROMs, e.g. HTC's, remove the icon instead of hiding it). If the index has nothing, the status
+ * icons are scanned again and the miss is counted. Only used from SystemUI's main thread.
+ */
+class AlarmIconIndex implements View.OnAttachStateChangeListener {
+    static final String ALARM_SLOT = "alarm_clock";
+
+    private final SystemUIFields mFields;
+    private WeakReference<ImageView> mIcon;
+    private boolean mAttached;
+    private int mRescans;
+
+    AlarmIconIndex(SystemUIFields fields) {
+        mFields = fields;
+    }
+
+    /**
+     * @return the indexed alarm icon, or null if it's not known or not attached anymore.
+     */
+    ImageView get() {
+        return mAttached ? getIndexed() : null;
+    }
+
+    /**
+     * Indexes the view at viewIndex after an icon was added to statusIcons, if it's the alarm icon.
+     */
+    void onIconAdded(String slot, LinearLayout statusIcons, int viewIndex) {
+        if (!ALARM_SLOT.equals(slot) || viewIndex < 0 || viewIndex >= statusIcons.getChildCount())
+            return;
+        View view = statusIcons.getChildAt(viewIndex);
+        if (view instanceof ImageView && ALARM_SLOT.equals(mFields.getSlot(view)))
+            set((ImageView) view);
+    }
+
+    void onIconRemoved(String slot) {
+        if (ALARM_SLOT.equals(slot))
+            set(null);
+    }
+
+    /**
+     * Looks for the alarm icon among statusIcons' children, for when the index missed it.
+     */
+    ImageView rescan(LinearLayout statusIcons) {
+        mRescans++;
+        for (int i = 0; i < statusIcons.getChildCount(); i++) {
+            View view = statusIcons.getChildAt(i);
+            if (view instanceof ImageView && ALARM_SLOT.equals(mFields.getSlot(view))) {
+                set((ImageView) view);
+                return (ImageView) view;
+            }
+        }
+        return null;
+    }
+
+    void dump(PrintWriter writer) {
+        writer.println("alarm icon rescans: " + mRescans + ", indexed: " + (get() != null));
+    }
+
+    @Override
+    public void onViewAttachedToWindow(View view) {
+        // Back in the window, e.g. after being moved around.
+        if (getIndexed() == view)
+            mAttached = true;
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(View view) {
+        if (getIndexed() == view)
+            mAttached = false;
+    }
+
+    private ImageView getIndexed() {
+        return mIcon != null ? mIcon.get() : null;
+    }
+
+    private void set(ImageView icon) {
+        ImageView current = getIndexed();
+        if (current != icon) {
+            if (current != null)
+                current.removeOnAttachStateChangeListener(this);
+            if (icon != null)
+                icon.addOnAttachStateChangeListener(this);
+            mIcon = icon != null ? new WeakReference<ImageView>(icon) : null;
+        }
+        // Icons are indexed right after being added, possibly before they're attached to the window.
+        mAttached = icon != null;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.babi.android.xposed.dynamicalarmicon2;
+
+import java.util.TimeZone;
+
+/**
+ * Turns the next alarm, as an epoch time or as NEXT_ALARM_FORMATTED text, into the local time shown
+ * by the icon, packed as by {@link TimeScanner}.
+ * <p/>
+ * The time zone and its UTC offset are cached around the last trigger time, as long as the offset is
+ * the same a day before and after it (i.e. there's no DST transition nearby). Call
+ * {@link #invalidate()} when the time zone or the clock changes. Not thread-safe.
+ */
+class AlarmTimeResolver {
+    private static final long MINUTE_MS = 60 * 1000;
+    private static final long DAY_MS = 24 * 60 * MINUTE_MS;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private TimeZone mTimeZone;
+    private int mOffset;
+    /* Trigger times in [mValidFrom, mValidUntil) use mOffset, empty when invalidated. */
+    private long mValidFrom;
+    private long mValidUntil;
+
+    void invalidate() {
+        mTimeZone = null;
+        mValidFrom = 0;
+        mValidUntil = 0;
+    }
+
+    /**
+     * @param triggerTime the alarm's time in milliseconds since the epoch.
+     */
+    int resolve(long triggerTime) {
+        int offset;
+        if (triggerTime >= mValidFrom && triggerTime < mValidUntil) {
+            offset = mOffset;
+        } else {
+            if (mTimeZone == null)
+                mTimeZone = TimeZone.getDefault();
+            offset = mTimeZone.getOffset(triggerTime);
+            if (mTimeZone.getOffset(triggerTime - DAY_MS) == offset
+                    && mTimeZone.getOffset(triggerTime + DAY_MS) == offset) {
+                mOffset = offset;
+                mValidFrom = triggerTime - DAY_MS;
+                mValidUntil = triggerTime + DAY_MS;
+            }
+        }
+        long localMinutes = (triggerTime + offset) / MINUTE_MS;
+        int minuteOfDay = (int) (localMinutes % MINUTES_PER_DAY);
+        if (minuteOfDay < 0)
+            minuteOfDay += MINUTES_PER_DAY;
+        return minuteOfDay;
+    }
+
+    /**
+     * @param nextAlarmFormatted e.g. Settings.System.NEXT_ALARM_FORMATTED, already in local time.
+     */
+    int resolve(CharSequence nextAlarmFormatted) {
+        if (nextAlarmFormatted == null || nextAlarmFormatted.length() == 0)
+            return TimeScanner.NO_TIME;
+        return TimeScanner.scan(nextAlarmFormatted);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.babi.android.xposed.dynamicalarmicon2;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * The alarm time shown by each notification entry and icon view, packed as by {@link TimeScanner}.
+ * <p/>
+ * Replaces Xposed's additional instance fields, which go through a global synchronized WeakHashMap
+ * and box the values. Objects are compared by identity and only weakly referenced. Lookups read a
+ * volatile open addressing table without locking. Adding an object copies the table and drops the
+ * entries of collected objects, which is cheap since only a handful of clock notifications exist at
+ * a time.
+ */
+class AlarmTimeStore {
+    private static final int MIN_CAPACITY = 8;
+
+    private static final class Entry extends WeakReference<Object> {
+        final int hash;
+        volatile int time;
+
+        Entry(Object key, int hash, int time, ReferenceQueue<Object> queue) {
+            super(key, queue);
+            this.hash = hash;
+            this.time = time;
+        }
+    }
+
+    private final ReferenceQueue<Object> mQueue = new ReferenceQueue<Object>();
+    private volatile Entry[] mTable = new Entry[MIN_CAPACITY];
+    /* Live and collected entries in mTable, guarded by this. */
+    private int mSize;
+
+    /**
+     * @return the object's time, or {@link TimeScanner#NO_TIME}.
+     */
+    int get(Object key) {
+        Entry entry = find(mTable, key, System.identityHashCode(key));
+        return entry != null ? entry.time : TimeScanner.NO_TIME;
+    }
+
+    synchronized void put(Object key, int time) {
+        int hash = System.identityHashCode(key);
+        Entry[] table = mTable;
+        Entry entry = find(table, key, hash);
+        if (entry != null) {
+            entry.time = time;
+            return;
+        }
+
+        boolean collected = false;
+        while (mQueue.poll() != null)
+            collected = true;
+        if (collected || (mSize + 1) * 2 > table.length)
+            table = rebuild(table);
+        else
+            table = table.clone();
+        insert(table, new Entry(key, hash, time, mQueue));
+        mSize++;
+        mTable = table;
+    }
+
+    private static Entry find(Entry[] table, Object key, int hash) {
+        int mask = table.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            Entry entry = table[slot];
+            if (entry == null)
+                return null;
+            if (entry.hash == hash && entry.get() == key)
+                return entry;
+        }
+    }
+
+    /**
+     * @return a copy of the table without the entries of collected objects, with room for one more.
+     */
+    private Entry[] rebuild(Entry[] table) {
+        int live = 0;
+        for (Entry entry : table) {
+            if (entry != null && entry.get() != null)
+                live++;
+        }
+        int capacity = MIN_CAPACITY;
+        while (capacity < (live + 1) * 2)
+            capacity <<= 1;
+        Entry[] rebuilt = new Entry[capacity];
+        for (Entry entry : table) {
+            if (entry != null && entry.get() != null)
+                insert(rebuilt, entry);
+        }
+        mSize = live;
+        return rebuilt;
+    }
+
+    private static void insert(Entry[] table, Entry entry) {
+        int mask = table.length - 1;
+        int slot = entry.hash & mask;
+        while (table[slot] != null)
+            slot = (slot + 1) & mask;
+        table[slot] = entry;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.babi.android.xposed.dynamicalarmicon2;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.PrintWriter;
+
+/**
+ * Merges bursts of next alarm change events into a single alarm icon update.
+ * <p/>
+ * Clock apps tend to reschedule all their alarms at once (on boot in particular), and each event
+ * would otherwise cost a binder call to AlarmManager and a full update. The first event of a burst
+ * schedules the update, the following ones within the window are merged into it. Only used from
+ * SystemUI's main thread.
+ */
+class AlarmUpdateScheduler {
+    /* About one frame. */
+    static final long DEFAULT_WINDOW_MS = 16;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mUpdate;
+    private final long mWindowMs;
+    private boolean mPending;
+    private int mEvents;
+    private int mMerged;
+    private int mUpdates;
+    private int mUnchanged;
+
+    AlarmUpdateScheduler(final Runnable update, long windowMs) {
+        mWindowMs = windowMs;
+        mUpdate = new Runnable() {
+            @Override
+            public void run() {
+                mPending = false;
+                mUpdates++;
+                update.run();
+            }
+        };
+    }
+
+    /**
+     * Requests an update, which runs after the window unless one is already pending.
+     */
+    void schedule() {
+        mEvents++;
+        if (mPending) {
+            mMerged++;
+            return;
+        }
+        mPending = true;
+        mHandler.postDelayed(mUpdate, mWindowMs);
+    }
+
+    void cancel() {
+        mHandler.removeCallbacks(mUpdate);
+        mPending = false;
+    }
+
+    /**
+     * To be called by the update when the resolved alarm time didn't change and it did nothing.
+     */
+    void onUnchanged() {
+        mUnchanged++;
+    }
+
+    void dump(PrintWriter writer) {
+        writer.println("alarm events: " + mEvents + ", merged: " + mMerged + ", updates: " + mUpdates
+                + ", unchanged: " + mUnchanged + " (window " + mWindowMs + " ms)");
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.babi.android.xposed.dynamicalarmicon2;
+
+import de.robv.android.xposed.XposedBridge;
+
+/**
+ * The clock apps whose notifications get the clock icon, and how to find the alarm time in each.
+ * <p/>
+ * Compiled from the clock packages setting, one app per line:
+ * <pre>
+ * com.android.deskclock            setText(…) values of the RemoteViews, the default
+ * com.example.clock text           same as above
+ * com.example.clock view:time      setText(…) value of the view with that id name (or number)
+ * com.example.clock action:2       setText(…) value of the RemoteViews' third action
+ * com.example.clock when           Notification.when
+ * com.example.clock extra:key      CharSequence extra of the notification (KitKat and above)
+ * </pre>
+ * Lookups go through a small open addressing table, so notifications of other apps are usually
+ * rejected after one empty slot. Immutable once compiled.
+ */
+final class ClockPackageRules {
+    static final int TEXT = 0;
+    static final int VIEW = 1;
+    static final int ACTION = 2;
+    static final int WHEN = 3;
+    static final int EXTRA = 4;
+
+    static final class Rule {
+        final String packageName;
+        final int type;
+        /* ACTION: the action index. */
+        final int index;
+        /* VIEW: the id name or number. EXTRA: the extra's key. */
+        final String name;
+        /* VIEW: the view id if the rule gives a number, else 0 and the name has to be resolved in the
+         * app's resources. */
+        final int viewId;
+
+        Rule(String packageName, int type, int index, String name) {
+            this.packageName = packageName;
+            this.type = type;
+            this.index = index;
+            this.name = name;
+            this.viewId = type == VIEW ? parseInt(name, 0) : 0;
+        }
+    }
+
+    private final String mSource;
+    private final String[] mKeys;
+    private final Rule[] mRules;
+    private final int mMask;
+
+    private ClockPackageRules(String source, Rule[] rules, int count) {
+        mSource = source;
+        int size = 4;
+        while (size < count * 2)
+            size <<= 1;
+        mKeys = new String[size];
+        mRules = new Rule[size];
+        mMask = size - 1;
+        for (int i = 0; i < count; i++) {
+            Rule rule = rules[i];
+            int slot = slot(rule.packageName);
+            while (mKeys[slot] != null && !mKeys[slot].equals(rule.packageName))
+                slot = (slot + 1) & mMask;
+            mKeys[slot] = rule.packageName;
+            mRules[slot] = rule;
+        }
+    }
+
+    /**
+     * Invalid lines are logged and skipped.
+     */
+    static ClockPackageRules compile(String source) {
+        String[] lines = source.split("[\\n,;]");
+        Rule[] rules = new Rule[lines.length];
+        int count = 0;
+        for (String line : lines) {
+            line = line.trim();
+            if (line.isEmpty())
+                continue;
+            Rule rule = parseRule(line);
+            if (rule == null)
+                XposedBridge.log("DynamicAlarmIcon: ignoring invalid clock package rule \"" + line + "\"");
+            else
+                rules[count++] = rule;
+        }
+        return new ClockPackageRules(source, rules, count);
+    }
+
+    /**
+     * @return the setting this was compiled from.
+     */
+    String getSource() {
+        return mSource;
+    }
+
+    /**
+     * @return the package's rule, or null if it's not a clock app.
+     */
+    Rule find(String packageName) {
+        if (packageName == null)
+            return null;
+        int slot = slot(packageName);
+        String key;
+        while ((key = mKeys[slot]) != null) {
+            if (key.equals(packageName))
+                return mRules[slot];
+            slot = (slot + 1) & mMask;
+        }
+        return null;
+    }
+
+    private int slot(String packageName) {
+        int hash = packageName.hashCode();
+        return (hash ^ (hash >>> 16)) & mMask;
+    }
+
+    private static Rule parseRule(String line) {
+        String[] parts = line.split("\\s+");
+        if (parts.length > 2)
+            return null;
+        String packageName = parts[0];
+        if (parts.length == 1 || parts[1].equals("text"))
+            return new Rule(packageName, TEXT, 0, null);
+        String rule = parts[1];
+        if (rule.equals("when"))
+            return new Rule(packageName, WHEN, 0, null);
+
+        int colon = rule.indexOf(':');
+        if (colon <= 0 || colon == rule.length() - 1)
+            return null;
+        String type = rule.substring(0, colon);
+        String argument = rule.substring(colon + 1);
+        if (type.equals("extra"))
+            return new Rule(packageName, EXTRA, 0, argument);
+        if (type.equals("view"))
+            return new Rule(packageName, VIEW, 0, argument);
+        if (type.equals("action")) {
+            int index = parseInt(argument, -1);
+            return index >= 0 ? new Rule(packageName, ACTION, index, null) : null;
+        }
+        return null;
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        try {
+            return Integer.decode(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
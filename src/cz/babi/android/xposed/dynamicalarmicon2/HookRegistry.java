@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.babi.android.xposed.dynamicalarmicon2;
+
+import de.robv.android.xposed.XC_MethodHook;
+import de.robv.android.xposed.XposedBridge;
+
+import java.io.PrintWriter;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static de.robv.android.xposed.XposedHelpers.findClass;
+import static de.robv.android.xposed.XposedHelpers.findConstructorExact;
+import static de.robv.android.xposed.XposedHelpers.findMethodExact;
+
+/**
+ * Installs the module's hooks, at most one callback per hooked method.
+ * <p/>
+ * Hooking the same method a second time is rejected and logged instead of stacking another callback,
+ * which would make every call of that method slower for the rest of the process' life.
+ */
+class HookRegistry {
+    private final ClassLoader mClassLoader;
+    private final Map<Member, Hook> mHooks = new LinkedHashMap<Member, Hook>();
+
+    private static class Hook {
+        final XC_MethodHook.Unhook unhook;
+        int rejected;
+
+        Hook(XC_MethodHook.Unhook unhook) {
+            this.unhook = unhook;
+        }
+    }
+
+    HookRegistry(ClassLoader classLoader) {
+        mClassLoader = classLoader;
+    }
+
+    /**
+     * Same arguments as XposedHelpers.findAndHookMethod(…): parameter types (classes or class names)
+     * followed by the callback.
+     */
+    XC_MethodHook.Unhook hookMethod(String className, String methodName, Object... parameterTypesAndCallback) {
+        return hookMethod(findClass(className, mClassLoader), methodName, parameterTypesAndCallback);
+    }
+
+    XC_MethodHook.Unhook hookMethod(Class<?> clazz, String methodName, Object... parameterTypesAndCallback) {
+        XC_MethodHook callback = getCallback(parameterTypesAndCallback);
+        Object[] parameterTypes = Arrays.copyOf(parameterTypesAndCallback, parameterTypesAndCallback.length - 1);
+        Member method = findMethodExact(clazz, methodName, parameterTypes);
+        return hook(method, callback);
+    }
+
+    XC_MethodHook.Unhook hookConstructor(String className, Object... parameterTypesAndCallback) {
+        XC_MethodHook callback = getCallback(parameterTypesAndCallback);
+        Object[] parameterTypes = Arrays.copyOf(parameterTypesAndCallback, parameterTypesAndCallback.length - 1);
+        Member constructor = findConstructorExact(className, mClassLoader, parameterTypes);
+        return hook(constructor, callback);
+    }
+
+    void hookAllConstructors(String className, XC_MethodHook callback) {
+        for (Member constructor : findClass(className, mClassLoader).getDeclaredConstructors())
+            hook(constructor, callback);
+    }
+
+    /**
+     * Hooks every method of the class with that name, for methods whose signature differs between ROMs.
+     */
+    void hookAllMethods(String className, String methodName, XC_MethodHook callback) {
+        for (Method method : findClass(className, mClassLoader).getDeclaredMethods()) {
+            if (method.getName().equals(methodName))
+                hook(method, callback);
+        }
+    }
+
+    /**
+     * Writes every hooked method with the number of times hooking it again was refused.
+     */
+    synchronized void dump(PrintWriter writer) {
+        int rejected = 0;
+        for (Map.Entry<Member, Hook> entry : mHooks.entrySet()) {
+            writer.println(entry.getKey() + ": " + entry.getValue().rejected + " rejected");
+            rejected += entry.getValue().rejected;
+        }
+        writer.println(mHooks.size() + " methods hooked, " + rejected + " hooks rejected");
+    }
+
+    private synchronized XC_MethodHook.Unhook hook(Member member, XC_MethodHook callback) {
+        Hook hook = mHooks.get(member);
+        if (hook != null) {
+            hook.rejected++;
+            XposedBridge.log("DynamicAlarmIcon: refusing to hook " + member + " again");
+            return hook.unhook;
+        }
+        hook = new Hook(XposedBridge.hookMethod(member, callback));
+        mHooks.put(member, hook);
+        return hook.unhook;
+    }
+
+    private static XC_MethodHook getCallback(Object[] parameterTypesAndCallback) {
+        if (parameterTypesAndCallback.length == 0
+                || !(parameterTypesAndCallback[parameterTypesAndCallback.length - 1] instanceof XC_MethodHook))
+            throw new IllegalArgumentException("no callback defined");
+        return (XC_MethodHook) parameterTypesAndCallback[parameterTypesAndCallback.length - 1];
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.babi.android.xposed.dynamicalarmicon2;
+
+import android.Manifest;
+import android.os.Debug;
+
+import java.io.PrintWriter;
+
+/**
+ * Invocation counts, latency histograms and allocation counts of the hooks of one process, SystemUI
+ * or Timely.
+ * <p/>
+ * Everything is kept in arrays allocated up front, so recording doesn't allocate. Recording is off
+ * by default and can be switched with an {@link #ACTION_RECORD} broadcast; when it's off a hook only
+ * pays for reading one volatile field. Written from one thread only: SystemUI's main thread, or the
+ * one Timely runs its hooked method on.
+ */
+class HookStats {
+    static final String ACTION_RECORD = "com.germainz.dynamicalarmicon.RECORD_STATS";
+    static final String EXTRA_ENABLED = "enabled";
+    static final String ACTION_DUMP = "com.germainz.dynamicalarmicon.DUMP_STATS";
+    /* Needed to send either broadcast. The shell holds it, so they can still be sent with adb. */
+    static final String PERMISSION = Manifest.permission.DUMP;
+
+    static final int ENTRY = 0;
+    static final int BIG_CONTENT_VIEW = 1;
+    static final int GET_ICON = 2;
+    static final int UPDATE_DRAWABLE = 3;
+    static final int NEXT_ALARM_CHANGED = 4;
+    static final int MAKE_STATUS_BAR_VIEW = 5;
+    static final int ICON_ADDED = 6;
+    static final int ICON_REMOVED = 7;
+    static final int DESTROY = 8;
+    static final int STATUS_BAR_POLICY = 9;
+    static final int TIMELY_NEXT_ALARM = 10;
+    private static final String[] HOOK_NAMES = {"NotificationData.Entry()", "setBigContentView/setLargeView",
+            "StatusBarIconView.getIcon", "StatusBarIconView.updateDrawable", "onNextAlarmChanged",
+            "makeStatusBarView", "addIcon", "removeIcon", "PhoneStatusBar.destroy", "PhoneStatusBarPolicy()",
+            "Timely AlarmManager.f"};
+    private static final int HOOK_COUNT = HOOK_NAMES.length;
+
+    /* Upper bounds of the latency buckets in microseconds, the last bucket takes the rest. */
+    private static final int[] BUCKET_LIMITS_US = {10, 50, 100, 500, 1000, 5000, 16000};
+    private static final int BUCKET_COUNT = BUCKET_LIMITS_US.length + 1;
+
+    private volatile boolean mEnabled;
+    private final long[] mCounts = new long[HOOK_COUNT];
+    private final long[] mTotalNanos = new long[HOOK_COUNT];
+    private final long[] mMaxNanos = new long[HOOK_COUNT];
+    private final long[] mAllocations = new long[HOOK_COUNT];
+    private final long[] mHistograms = new long[HOOK_COUNT * BUCKET_COUNT];
+
+    static String getName(int hook) {
+        return HOOK_NAMES[hook];
+    }
+
+    boolean isEnabled() {
+        return mEnabled;
+    }
+
+    void setEnabled(boolean enabled) {
+        if (enabled == mEnabled)
+            return;
+        // Allocation counting slows the whole process down, so it only runs while recording.
+        if (enabled)
+            Debug.startAllocCounting();
+        else
+            Debug.stopAllocCounting();
+        mEnabled = enabled;
+    }
+
+    /**
+     * @param startNanos      System.nanoTime() when the hook started.
+     * @param startAllocCount Debug.getThreadAllocCount() when the hook started.
+     */
+    void record(int hook, long startNanos, int startAllocCount) {
+        long nanos = System.nanoTime() - startNanos;
+        mCounts[hook]++;
+        mTotalNanos[hook] += nanos;
+        if (nanos > mMaxNanos[hook])
+            mMaxNanos[hook] = nanos;
+        mAllocations[hook] += Debug.getThreadAllocCount() - startAllocCount;
+
+        long micros = nanos / 1000;
+        int bucket = 0;
+        while (bucket < BUCKET_LIMITS_US.length && micros >= BUCKET_LIMITS_US[bucket])
+            bucket++;
+        mHistograms[hook * BUCKET_COUNT + bucket]++;
+    }
+
+    void reset() {
+        for (int i = 0; i < HOOK_COUNT; i++) {
+            mCounts[i] = 0;
+            mTotalNanos[i] = 0;
+            mMaxNanos[i] = 0;
+            mAllocations[i] = 0;
+        }
+        for (int i = 0; i < mHistograms.length; i++)
+            mHistograms[i] = 0;
+    }
+
+    void dump(PrintWriter writer) {
+        writer.println("recording: " + mEnabled);
+        StringBuilder header = new StringBuilder("hook: calls, avg us, max us, allocations | <");
+        for (int i = 0; i < BUCKET_LIMITS_US.length; i++)
+            header.append(' ').append(BUCKET_LIMITS_US[i]);
+        writer.println(header.append(" us, more").toString());
+        for (int hook = 0; hook < HOOK_COUNT; hook++) {
+            long count = mCounts[hook];
+            StringBuilder line = new StringBuilder(HOOK_NAMES[hook]).append(": ").append(count)
+                    .append(", ").append(count == 0 ? 0 : mTotalNanos[hook] / count / 1000)
+                    .append(", ").append(mMaxNanos[hook] / 1000)
+                    .append(", ").append(mAllocations[hook]).append(" |");
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++)
+                line.append(' ').append(mHistograms[hook * BUCKET_COUNT + bucket]);
+            writer.println(line.toString());
+        }
+    }
+}
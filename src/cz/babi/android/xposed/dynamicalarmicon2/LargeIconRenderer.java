@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.babi.android.xposed.dynamicalarmicon2;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import com.germainz.dynamicalarmicon.HookTrace;
+import com.germainz.dynamicalarmicon.LargeIconCache;
+
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Renders notification large icons on a background thread, so inflating an alarm notification
+ * doesn't wait for them.
+ * <p/>
+ * Cached icons are returned right away. Otherwise the icon is rendered on a dedicated HandlerThread
+ * and handed back on the main thread, and callers show {@link LargeIconCache#getPlaceholder} until
+ * then. A newer request for the same notification cancels the pending
+ * one, so bursts of reposts with different times only render the last time. Apart from the render
+ * itself, only used from SystemUI's main thread.
+ */
+class LargeIconRenderer {
+    interface Callback {
+        void onRendered(Bitmap bitmap);
+    }
+
+    private static final String TRACE_RENDER = HookTrace.name("LargeIconRenderer.render");
+    private static final String TRACE_CACHED = HookTrace.name("largeIconsCached");
+    private static final String TRACE_RENDERED = HookTrace.name("largeIconsRendered");
+
+    private final LargeIconCache mCache;
+    private final Handler mRenderHandler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    /* Token of the pending request of each notification, used to cancel it. */
+    private final Map<String, Object> mPending = new HashMap<String, Object>();
+    private int mRequests;
+    private int mCached;
+    private int mCancelled;
+    /* Only written by the render thread. */
+    private int mRendered;
+
+    LargeIconRenderer(LargeIconCache cache) {
+        mCache = cache;
+        HandlerThread thread = new HandlerThread("DynamicAlarmIcon-LargeIcons", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        mRenderHandler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * @param key identifies the notification, e.g. its package and id.
+     * @return the icon if it's cached, in which case the callback isn't called. Else null, and the
+     * callback will be called on the main thread once the icon is rendered, unless another request is
+     * made for the same key first.
+     */
+    Bitmap request(final String key, final int style, final int color, final int hours, final int minutes,
+                   final int width, final int height, final Callback callback) {
+        mRequests++;
+        Bitmap bitmap = mCache.peek(style, color, hours, minutes, width, height);
+        if (bitmap != null) {
+            mCached++;
+            HookTrace.counter(TRACE_CACHED, mCached);
+            cancel(key);
+            return bitmap;
+        }
+
+        cancel(key);
+        final Object token = new Object();
+        mPending.put(key, token);
+        mRenderHandler.postAtTime(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap;
+                HookTrace.Sink sink = HookTrace.begin(TRACE_RENDER);
+                try {
+                    bitmap = mCache.get(style, color, hours, minutes, width, height);
+                } finally {
+                    HookTrace.end(sink);
+                }
+                HookTrace.counter(TRACE_RENDERED, ++mRendered);
+                mMainHandler.postAtTime(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Superseded after the render started.
+                        if (mPending.get(key) != token)
+                            return;
+                        mPending.remove(key);
+                        callback.onRendered(bitmap);
+                    }
+                }, token, SystemClock.uptimeMillis());
+            }
+        }, token, SystemClock.uptimeMillis());
+        return null;
+    }
+
+    void dump(PrintWriter writer) {
+        writer.println("large icon requests: " + mRequests + ", cached: " + mCached + ", cancelled: " + mCancelled);
+    }
+
+    private void cancel(String key) {
+        Object token = mPending.remove(key);
+        if (token != null) {
+            mRenderHandler.removeCallbacksAndMessages(token);
+            mMainHandler.removeCallbacksAndMessages(token);
+            mCancelled++;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.babi.android.xposed.dynamicalarmicon2;
+
+import android.os.Debug;
+import com.germainz.dynamicalarmicon.HookTrace;
+import de.robv.android.xposed.XC_MethodHook;
+
+/**
+ * A hook whose callbacks are timed into {@link HookStats} while recording is on, and traced as
+ * {@link HookTrace} sections while tracing is on.
+ * <p/>
+ * Subclasses override {@link #before(MethodHookParam)} and/or {@link #after(MethodHookParam)} instead of
+ * beforeHookedMethod/afterHookedMethod. Only the overridden callbacks are traced, and each invocation is
+ * recorded once: when both are overridden, the cost of before(…) is carried over to after(…) in the
+ * param's extras.
+ */
+abstract class MeasuredHook extends XC_MethodHook {
+    private static final String EXTRA_BEFORE_NANOS = "DynamicAlarmIcon.beforeNanos";
+    private static final String EXTRA_BEFORE_ALLOC_COUNT = "DynamicAlarmIcon.beforeAllocCount";
+
+    private final HookStats mStats;
+    private final int mHook;
+    private final String mTraceName;
+    private final boolean mHasBefore;
+    private final boolean mHasAfter;
+
+    MeasuredHook(HookStats stats, int hook) {
+        mStats = stats;
+        mHook = hook;
+        mTraceName = HookTrace.name(HookStats.getName(hook));
+        mHasBefore = overrides("before");
+        mHasAfter = overrides("after");
+    }
+
+    @Override
+    protected final void beforeHookedMethod(MethodHookParam param) throws Throwable {
+        if (!mHasBefore)
+            return;
+        HookTrace.Sink sink = HookTrace.begin(mTraceName);
+        try {
+            if (!mStats.isEnabled()) {
+                before(param);
+                return;
+            }
+            long startNanos = System.nanoTime();
+            int startAllocCount = Debug.getThreadAllocCount();
+            try {
+                before(param);
+            } finally {
+                if (mHasAfter) {
+                    // Read before boxing, so the extras aren't counted.
+                    long nanos = System.nanoTime() - startNanos;
+                    int allocCount = Debug.getThreadAllocCount() - startAllocCount;
+                    param.setObjectExtra(EXTRA_BEFORE_NANOS, nanos);
+                    param.setObjectExtra(EXTRA_BEFORE_ALLOC_COUNT, allocCount);
+                } else {
+                    mStats.record(mHook, startNanos, startAllocCount);
+                }
+            }
+        } finally {
+            HookTrace.end(sink);
+        }
+    }
+
+    @Override
+    protected final void afterHookedMethod(MethodHookParam param) throws Throwable {
+        if (!mHasAfter)
+            return;
+        HookTrace.Sink sink = HookTrace.begin(mTraceName);
+        try {
+            if (!mStats.isEnabled()) {
+                after(param);
+                return;
+            }
+            long startNanos = System.nanoTime();
+            int startAllocCount = Debug.getThreadAllocCount();
+            try {
+                after(param);
+            } finally {
+                // Null if recording was switched on in between.
+                Object beforeNanos = param.getObjectExtra(EXTRA_BEFORE_NANOS);
+                Object beforeAllocCount = param.getObjectExtra(EXTRA_BEFORE_ALLOC_COUNT);
+                if (beforeNanos != null && beforeAllocCount != null) {
+                    startNanos -= (Long) beforeNanos;
+                    startAllocCount -= (Integer) beforeAllocCount;
+                }
+                mStats.record(mHook, startNanos, startAllocCount);
+            }
+        } finally {
+            HookTrace.end(sink);
+        }
+    }
+
+    protected void before(MethodHookParam param) throws Throwable {
+    }
+
+    protected void after(MethodHookParam param) throws Throwable {
+    }
+
+    private boolean overrides(String callback) {
+        for (Class<?> c = getClass(); c != MeasuredHook.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod(callback, MethodHookParam.class);
+                return true;
+            } catch (NoSuchMethodException ignored) {
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.babi.android.xposed.dynamicalarmicon2;
+
+import com.germainz.dynamicalarmicon.HookTrace;
+
+import java.io.PrintWriter;
+
+/**
+ * Remembers the alarm time found in the last few clock notifications.
+ * <p/>
+ * Clock apps repost the same notification many times. Entries are keyed by the notification's
+ * package, id and tag plus a fingerprint of its layout and texts, see {@link #fingerprint(int)}. So a
+ * repost with the same texts skips scanning them, and a repost with a new alarm under the same id
+ * misses. The least recently used entry is replaced when the cache is full. Only used from
+ * SystemUI's main thread.
+ */
+class NotificationTimeCache {
+    static final int DEFAULT_SIZE = 8;
+    /* Unlike TimeScanner.NO_TIME, which is cached for notifications without a time. */
+    static final int MISS = -2;
+    private static final String TRACE_HITS = HookTrace.name("timeCacheHits");
+    private static final String TRACE_MISSES = HookTrace.name("timeCacheMisses");
+
+    private final String[] mPackages;
+    private final int[] mIds;
+    private final String[] mTags;
+    private final int[] mFingerprints;
+    private final int[] mTimes;
+    private final long[] mLastUsed;
+    private long mClock;
+    private int mHits;
+    private int mMisses;
+
+    NotificationTimeCache(int size) {
+        mPackages = new String[size];
+        mIds = new int[size];
+        mTags = new String[size];
+        mFingerprints = new int[size];
+        mTimes = new int[size];
+        mLastUsed = new long[size];
+    }
+
+    /**
+     * Starts the fingerprint of a notification, to be followed by {@link #addText(int, CharSequence)}
+     * for each text the time is looked for in. The notification's when isn't part of it: apps that
+     * keep the default one would never hit, and apps that keep a fixed one could change their text.
+     *
+     * @param layoutId its content view's layout.
+     */
+    static int fingerprint(int layoutId) {
+        return layoutId;
+    }
+
+    /**
+     * The whole text is hashed since the alarm can change anywhere in it, e.g. "Alarm 7:30" to
+     * "Alarm 8:30". That's a single pass over the chars without allocating, like scanning it.
+     */
+    static int addText(int fingerprint, CharSequence text) {
+        int length = text.length();
+        int hash = 31 * fingerprint + length;
+        for (int i = 0; i < length; i++)
+            hash = 31 * hash + text.charAt(i);
+        return hash;
+    }
+
+    /**
+     * @return the cached time, which may be {@link TimeScanner#NO_TIME}, or {@link #MISS}.
+     */
+    int get(String packageName, int id, String tag, int fingerprint) {
+        int index = indexOf(packageName, id, tag, fingerprint);
+        if (index < 0) {
+            mMisses++;
+            HookTrace.counter(TRACE_MISSES, mMisses);
+            return MISS;
+        }
+        mHits++;
+        HookTrace.counter(TRACE_HITS, mHits);
+        mLastUsed[index] = ++mClock;
+        return mTimes[index];
+    }
+
+    void put(String packageName, int id, String tag, int fingerprint, int time) {
+        // Replace the notification's previous content, else the least recently used entry.
+        int index = 0;
+        for (int i = 0; i < mPackages.length; i++) {
+            if (mPackages[i] == null || (mIds[i] == id && mPackages[i].equals(packageName) && equals(mTags[i], tag))) {
+                index = i;
+                break;
+            }
+            if (mLastUsed[i] < mLastUsed[index])
+                index = i;
+        }
+        mPackages[index] = packageName;
+        mIds[index] = id;
+        mTags[index] = tag;
+        mFingerprints[index] = fingerprint;
+        mTimes[index] = time;
+        mLastUsed[index] = ++mClock;
+    }
+
+    void clear() {
+        for (int i = 0; i < mPackages.length; i++) {
+            mPackages[i] = null;
+            mTags[i] = null;
+            mLastUsed[i] = 0;
+        }
+    }
+
+    void dump(PrintWriter writer) {
+        writer.println("notification time cache hits: " + mHits + ", misses: " + mMisses
+                + " (" + mPackages.length + " entries)");
+    }
+
+    private int indexOf(String packageName, int id, String tag, int fingerprint) {
+        for (int i = 0; i < mPackages.length; i++) {
+            if (mFingerprints[i] == fingerprint && mIds[i] == id && mPackages[i] != null
+                    && mPackages[i].equals(packageName) && equals(mTags[i], tag))
+                return i;
+        }
+        return -1;
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
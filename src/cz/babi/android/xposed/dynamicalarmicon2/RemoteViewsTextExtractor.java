@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.babi.android.xposed.dynamicalarmicon2;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.text.TextUtils;
+import de.robv.android.xposed.XposedBridge;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.List;
+
+import static de.robv.android.xposed.XposedHelpers.findClass;
+import static de.robv.android.xposed.XposedHelpers.findField;
+
+/**
+ * Reads the setText(…) values of RemoteViews actions to find the alarm time.
+ * <p/>
+ * The values are read in one walk over the actions, see {@link #readTexts(List, int)}, and kept so
+ * they can be fingerprinted before they're scanned. ReflectionAction's fields are read directly. If
+ * they can't be resolved on this ROM, each action is written to a single reused Parcel and read back
+ * instead. Only used from SystemUI's main thread.
+ */
+class RemoteViewsTextExtractor {
+    private static final int REFLECTION_ACTION_TAG = 2;
+    static final int ANY_VIEW = -1;
+
+    private Class<?> mReflectionActionClass;
+    private Field mViewIdField;
+    private Field mMethodNameField;
+    private Field mValueField;
+    private Parcel mParcel;
+    /* The values read by readTexts(…), and the index of the action each one came from. */
+    private CharSequence[] mTexts = new CharSequence[8];
+    private int[] mTextActions = new int[8];
+    private int mTextCount;
+
+    RemoteViewsTextExtractor() {
+        try {
+            mReflectionActionClass = findClass("android.widget.RemoteViews$ReflectionAction", null);
+            mViewIdField = findField(mReflectionActionClass, "viewId");
+            mMethodNameField = findField(mReflectionActionClass, "methodName");
+            mValueField = findField(mReflectionActionClass, "value");
+        } catch (Throwable t) {
+            XposedBridge.log("DynamicAlarmIcon: can't read ReflectionAction fields, falling back to Parcels: " + t);
+            mReflectionActionClass = null;
+            mViewIdField = null;
+            mMethodNameField = null;
+            mValueField = null;
+        }
+    }
+
+    /**
+     * Reads the setText(…) values of the actions, replacing those of the previous call. Call
+     * {@link #clearTexts()} once done with them.
+     *
+     * @param actions the RemoteViews' mActions.
+     * @param viewId  only read the values of that view, or {@link #ANY_VIEW}.
+     * @return the number of values read.
+     */
+    int readTexts(List<?> actions, int viewId) {
+        clearTexts();
+        for (int i = 0; i < actions.size(); i++) {
+            CharSequence text = getSetTextValue(actions.get(i), viewId);
+            if (text == null)
+                continue;
+            if (mTextCount == mTexts.length) {
+                mTexts = Arrays.copyOf(mTexts, mTextCount * 2);
+                mTextActions = Arrays.copyOf(mTextActions, mTextCount * 2);
+            }
+            mTexts[mTextCount] = text;
+            mTextActions[mTextCount] = i;
+            mTextCount++;
+        }
+        return mTextCount;
+    }
+
+    CharSequence getText(int index) {
+        return mTexts[index];
+    }
+
+    /**
+     * Drops the values read, so the notification's texts aren't kept alive.
+     */
+    void clearTexts() {
+        for (int i = 0; i < mTextCount; i++)
+            mTexts[i] = null;
+        mTextCount = 0;
+    }
+
+    /**
+     * @return the time in the first value read that holds one, packed as by {@link TimeScanner}, or
+     * {@link TimeScanner#NO_TIME}.
+     */
+    int findTime() {
+        for (int i = 0; i < mTextCount; i++) {
+            // The time should be in the notification's text, not title.
+            int time = TimeScanner.scan(mTexts[i]);
+            if (time != TimeScanner.NO_TIME)
+                return time;
+        }
+        return TimeScanner.NO_TIME;
+    }
+
+    /**
+     * @return the time in the value read from the action at that index, or {@link TimeScanner#NO_TIME}.
+     */
+    int findTimeAt(int actionIndex) {
+        for (int i = 0; i < mTextCount; i++) {
+            if (mTextActions[i] == actionIndex)
+                return TimeScanner.scan(mTexts[i]);
+        }
+        return TimeScanner.NO_TIME;
+    }
+
+    private CharSequence getSetTextValue(Object action, int viewId) {
+        if (mReflectionActionClass != null) {
+            if (action.getClass() != mReflectionActionClass)
+                return null;
+            try {
+                if (viewId != ANY_VIEW && mViewIdField.getInt(action) != viewId)
+                    return null;
+                if (!"setText".equals(mMethodNameField.get(action)))
+                    return null;
+                Object value = mValueField.get(action);
+                return value instanceof CharSequence ? (CharSequence) value : null;
+            } catch (IllegalAccessException e) {
+                // Shouldn't happen since findField made it accessible, but the Parcel still works.
+            }
+        }
+        return readSetTextValue((Parcelable) action, viewId);
+    }
+
+    private CharSequence readSetTextValue(Parcelable action, int viewId) {
+        if (mParcel == null)
+            mParcel = Parcel.obtain();
+        Parcel parcel = mParcel;
+        parcel.setDataSize(0);
+        action.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        /* RemoteViews.setTextViewText(…) adds a ReflectionAction action:
+         *   ReflectionAction(int viewId, String methodName, CharSequence value)
+         * ReflectionAction writes, in order, the following values to the parcelable:
+         *   int TAG: 2 for ReflectionAction.
+         *   int viewId: the view's ID.
+         *   String methodName: "setText".
+         *   int type: CHAR_SEQUENCE = 10, but we don't need to check it since it's always 10
+         *             with setText.
+         *   CharSequence value: the text we want, written using TextUtils.writeToParcel(…)
+         */
+
+        // Check if it's a ReflectionAction.
+        if (parcel.readInt() != REFLECTION_ACTION_TAG)
+            return null;
+
+        if (parcel.readInt() != viewId && viewId != ANY_VIEW)
+            return null;
+        // Check if methodName = "setText"
+        if (!"setText".equals(parcel.readString()))
+            return null;
+        parcel.readInt(); // discard type.
+        // Get value.
+        return TextUtils.CHAR_SEQUENCE_CREATOR.createFromParcel(parcel);
+    }
+}
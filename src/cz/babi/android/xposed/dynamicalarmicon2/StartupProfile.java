@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.babi.android.xposed.dynamicalarmicon2;
+
+import de.robv.android.xposed.XposedBridge;
+
+import java.io.PrintWriter;
+
+/**
+ * Time spent by the module in each phase of SystemUI's startup.
+ * <p/>
+ * Only the entry point hooks are installed when SystemUI is loaded, the rest is done on first use.
+ * Each phase is timed the first time it runs, and a summary is logged once the deferred hooks are
+ * installed. Only used from SystemUI's main thread.
+ */
+class StartupProfile {
+    static final int EAGER_HOOKS = 0;
+    static final int DEFERRED_HOOKS = 1;
+    static final int FIELDS = 2;
+    static final int CONFIG = 3;
+    static final int METRICS = 4;
+    static final int TEXT_EXTRACTOR = 5;
+    static final int LARGE_ICONS = 6;
+    private static final String[] PHASE_NAMES = {"eager hooks", "deferred hooks", "SystemUI fields", "config",
+            "display metrics", "RemoteViews reflection", "large icon renderer"};
+
+    private final long[] mNanos = new long[PHASE_NAMES.length];
+
+    /**
+     * @param startNanos System.nanoTime() when the phase started.
+     */
+    void record(int phase, long startNanos) {
+        mNanos[phase] += System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Logs the phases recorded so far, e.g. once SystemUI's status bar is built.
+     */
+    void log() {
+        StringBuilder line = new StringBuilder("DynamicAlarmIcon: startup");
+        append(line);
+        XposedBridge.log(line.toString());
+    }
+
+    void dump(PrintWriter writer) {
+        StringBuilder line = new StringBuilder("startup");
+        append(line);
+        writer.println(line.toString());
+    }
+
+    private void append(StringBuilder line) {
+        long total = 0;
+        for (int phase = 0; phase < PHASE_NAMES.length; phase++) {
+            line.append(phase == 0 ? ": " : ", ").append(PHASE_NAMES[phase]).append(' ')
+                    .append(mNanos[phase] / 1000).append(" us");
+            total += mNanos[phase];
+        }
+        line.append(" (total ").append(total / 1000).append(" us)");
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.babi.android.xposed.dynamicalarmicon2;
+
+import android.app.Notification;
+import android.content.Context;
+import android.os.Build;
+import android.view.View;
+import android.widget.LinearLayout;
+import android.widget.RemoteViews;
+import android.widget.TextView;
+import com.germainz.dynamicalarmicon.Config;
+import de.robv.android.xposed.XposedBridge;
+import de.robv.android.xposed.XposedHelpers;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+import static de.robv.android.xposed.XposedHelpers.findClass;
+import static de.robv.android.xposed.XposedHelpers.findField;
+
+/**
+ * Every SystemUI field the hooks read, resolved once when SystemUI is loaded.
+ * <p/>
+ * If a ROM renamed a field or class the module can't work without, the constructor throws right away,
+ * naming it, instead of the hooks failing later on every call. Fields that only some features need
+ * are optional: a missing one is logged, and its getter returns null or 0.
+ */
+final class SystemUIFields {
+    private final Field mNotificationPkg;
+    private final Field mNotificationNotification;
+    private final Field mNotificationId;
+    private final Field mNotificationTag;
+    private final Field mEntryExpanded;
+    private final Field mEntryExpandedBig;
+    private final Field mRemoteViewsActions;
+    private final Field mIconViewSlot;
+    private final Field mIconPkg;
+    private final Field mStatusBarContext;
+    private final Field mIconController;
+    private final Field mStatusIcons;
+    private final Field mIconSize;
+    private final Field mIconHPadding;
+    private final Field mAlarmStatus;
+
+    SystemUIFields(ClassLoader classLoader, Class<?> statusBarNotificationClass) {
+        Class<?> phoneStatusBar = findRequiredClass("com.android.systemui.statusbar.phone.PhoneStatusBar",
+                classLoader);
+        // Since Marshmallow the status icons are handled by StatusBarIconController.
+        Class<?> iconController = Config.IS_MARSHMALLOW_OR_ABOVE
+                ? findRequiredClass("com.android.systemui.statusbar.phone.StatusBarIconController", classLoader)
+                : phoneStatusBar;
+
+        mNotificationPkg = field(statusBarNotificationClass, "pkg");
+        mNotificationNotification = field(statusBarNotificationClass, "notification");
+        // Only tell a package's notifications apart in the caches.
+        mNotificationId = optionalField(statusBarNotificationClass, "id");
+        mNotificationTag = optionalField(statusBarNotificationClass, "tag");
+        // The inflated views are only used to swap in late large icons.
+        Class<?> entry = findOptionalClass("com.android.systemui.statusbar.NotificationData.Entry", classLoader);
+        mEntryExpanded = optionalField(entry, "expanded");
+        mEntryExpandedBig = optionalField(entry, Config.IS_KITKAT_OR_ABOVE ? "expandedBig" : "expandedLarge");
+        // Only needed by the rules that read the notification's text.
+        mRemoteViewsActions = optionalField(RemoteViews.class, "mActions");
+        mIconViewSlot = field(findRequiredClass("com.android.systemui.statusbar.StatusBarIconView", classLoader),
+                "mSlot");
+        mIconPkg = Config.IS_MARSHMALLOW_OR_ABOVE
+                ? field(findRequiredClass("com.android.internal.statusbar.StatusBarIcon", classLoader), "pkg") : null;
+        mStatusBarContext = field(phoneStatusBar, "mContext");
+        mIconController = Config.IS_MARSHMALLOW_OR_ABOVE ? field(phoneStatusBar, "mIconController") : null;
+        mStatusIcons = field(iconController, "mStatusIcons");
+        // Only used to size the alarm icon like the other status icons.
+        mIconSize = Config.IS_LOLLIPOP_OR_ABOVE ? optionalField(iconController, "mIconSize") : null;
+        mIconHPadding = Config.IS_LOLLIPOP_OR_ABOVE ? optionalField(iconController, "mIconHPadding") : null;
+        // Only used for the icon in the expanded status bar's header.
+        mAlarmStatus = Config.IS_LOLLIPOP_OR_ABOVE ? optionalField(findOptionalClass(
+                "com.android.systemui.statusbar.phone.StatusBarHeaderView", classLoader), "mAlarmStatus") : null;
+    }
+
+    String getPackage(Object statusBarNotification) {
+        return (String) get(mNotificationPkg, statusBarNotification);
+    }
+
+    Notification getNotification(Object statusBarNotification) {
+        return (Notification) get(mNotificationNotification, statusBarNotification);
+    }
+
+    /**
+     * @return the notification's id, or 0 if it's unknown on this ROM.
+     */
+    int getId(Object statusBarNotification) {
+        if (mNotificationId == null)
+            return 0;
+        try {
+            return mNotificationId.getInt(statusBarNotification);
+        } catch (IllegalAccessException e) {
+            throw new IllegalAccessError(e.getMessage());
+        }
+    }
+
+    /**
+     * @return the notification's tag, or null if there's none or it's unknown on this ROM.
+     */
+    String getTag(Object statusBarNotification) {
+        return mNotificationTag != null ? (String) get(mNotificationTag, statusBarNotification) : null;
+    }
+
+    /**
+     * @return the entry's inflated content view, or null if it's not inflated or unknown on this ROM.
+     */
+    View getExpanded(Object entry) {
+        return mEntryExpanded != null ? (View) get(mEntryExpanded, entry) : null;
+    }
+
+    /**
+     * @return the entry's inflated big content view, or null if there's none or it's unknown on this ROM.
+     */
+    View getExpandedBig(Object entry) {
+        return mEntryExpandedBig != null ? (View) get(mEntryExpandedBig, entry) : null;
+    }
+
+    /**
+     * @return the RemoteViews' actions, or null if there are none or they're unknown on this ROM.
+     */
+    List<?> getActions(RemoteViews remoteViews) {
+        return mRemoteViewsActions != null ? (List<?>) get(mRemoteViewsActions, remoteViews) : null;
+    }
+
+    String getSlot(Object statusBarIconView) {
+        return (String) get(mIconViewSlot, statusBarIconView);
+    }
+
+    /**
+     * Marshmallow and above only.
+     */
+    String getIconPackage(Object statusBarIcon) {
+        return (String) get(mIconPkg, statusBarIcon);
+    }
+
+    Context getContext(Object phoneStatusBar) {
+        return (Context) get(mStatusBarContext, phoneStatusBar);
+    }
+
+    LinearLayout getStatusIcons(Object phoneStatusBar) {
+        return getIconControllerStatusIcons(getIconController(phoneStatusBar));
+    }
+
+    /**
+     * @param iconController the StatusBarIconController on Marshmallow and above, else the PhoneStatusBar.
+     */
+    LinearLayout getIconControllerStatusIcons(Object iconController) {
+        return (LinearLayout) get(mStatusIcons, iconController);
+    }
+
+    /**
+     * Lollipop and above only.
+     *
+     * @return the width of the status icons, or 0 if it's unknown on this ROM.
+     */
+    int getStatusIconWidth(Object phoneStatusBar) {
+        if (mIconSize == null || mIconHPadding == null)
+            return 0;
+        Object iconController = getIconController(phoneStatusBar);
+        try {
+            return mIconSize.getInt(iconController) + 2 * mIconHPadding.getInt(iconController);
+        } catch (IllegalAccessException e) {
+            throw new IllegalAccessError(e.getMessage());
+        }
+    }
+
+    /**
+     * @return true if the expanded status bar's header has an alarm text view, on Lollipop and above.
+     */
+    boolean hasAlarmStatus() {
+        return mAlarmStatus != null;
+    }
+
+    /**
+     * Only if {@link #hasAlarmStatus()}.
+     */
+    TextView getAlarmStatus(Object statusBarHeaderView) {
+        return (TextView) get(mAlarmStatus, statusBarHeaderView);
+    }
+
+    private Object getIconController(Object phoneStatusBar) {
+        return mIconController != null ? get(mIconController, phoneStatusBar) : phoneStatusBar;
+    }
+
+    private static Object get(Field field, Object object) {
+        try {
+            return field.get(object);
+        } catch (IllegalAccessException e) {
+            // findField made every field accessible.
+            throw new IllegalAccessError(e.getMessage());
+        }
+    }
+
+    /**
+     * @param clazz may be null if it's an optional class that wasn't found.
+     * @return the field, or null if it doesn't exist.
+     */
+    private static Field optionalField(Class<?> clazz, String name) {
+        if (clazz == null)
+            return null;
+        try {
+            return findField(clazz, name);
+        } catch (NoSuchFieldError e) {
+            XposedBridge.log("DynamicAlarmIcon: " + clazz.getName() + "." + name
+                    + " not found, the features that need it are off (SDK " + Build.VERSION.SDK_INT + ")");
+            return null;
+        }
+    }
+
+    private static Field field(Class<?> clazz, String name) {
+        try {
+            return findField(clazz, name);
+        } catch (NoSuchFieldError e) {
+            throw unsupported(clazz.getName() + "." + name, e);
+        }
+    }
+
+    /**
+     * @return the class, or null if it doesn't exist.
+     */
+    private static Class<?> findOptionalClass(String className, ClassLoader classLoader) {
+        try {
+            return findClass(className, classLoader);
+        } catch (XposedHelpers.ClassNotFoundError e) {
+            XposedBridge.log("DynamicAlarmIcon: " + className
+                    + " not found, the features that need it are off (SDK " + Build.VERSION.SDK_INT + ")");
+            return null;
+        }
+    }
+
+    private static Class<?> findRequiredClass(String className, ClassLoader classLoader) {
+        try {
+            return findClass(className, classLoader);
+        } catch (XposedHelpers.ClassNotFoundError e) {
+            throw unsupported(className, e);
+        }
+    }
+
+    private static IllegalStateException unsupported(String name, Throwable cause) {
+        String message = "DynamicAlarmIcon: " + name + " not found, this ROM is not supported (SDK "
+                + Build.VERSION.SDK_INT + ")";
+        XposedBridge.log(message);
+        return new IllegalStateException(message, cause);
+    }
+}
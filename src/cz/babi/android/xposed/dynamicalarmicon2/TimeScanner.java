@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.babi.android.xposed.dynamicalarmicon2;
+
+/**
+ * Finds the first time (e.g. "7:30", "19:30", "7:30 PM", "7.30", "7h30") in a piece of text.
+ * <p/>
+ * Times are returned packed as hour * 60 + minute, with the hour in 24h format, or {@link #NO_TIME}.
+ * Times using ':' win over the '.' and 'h' separators some locales use, since those can also show
+ * up in dates and version numbers. So a time using them must also start a word, not follow a letter
+ * or '.' like "v1.20" or "1.17.10", and with '.' it must not be followed by another '.' like the date
+ * "17.10.". Digits of any script are accepted.
+ */
+final class TimeScanner {
+    static final int NO_TIME = -1;
+
+    private TimeScanner() {
+    }
+
+    static int getHour(int time) {
+        return time / 60;
+    }
+
+    static int getMinute(int time) {
+        return time % 60;
+    }
+
+    static int scan(CharSequence text) {
+        int fallback = NO_TIME;
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            int hour = digit(text.charAt(i));
+            // Times must start at the beginning of a number.
+            if (hour < 0 || (i > 0 && digit(text.charAt(i - 1)) >= 0))
+                continue;
+
+            int j = i + 1;
+            int digit;
+            if (j < length && (digit = digit(text.charAt(j))) >= 0) {
+                hour = hour * 10 + digit;
+                j++;
+            }
+            if (hour > 23 || j + 2 >= length)
+                continue;
+
+            char separator = text.charAt(j);
+            boolean colon = separator == ':' || separator == '\uFF1A';
+            if (!colon && separator != '.' && separator != 'h')
+                continue;
+            if (!colon && i > 0 && (Character.isLetter(text.charAt(i - 1)) || text.charAt(i - 1) == '.'))
+                continue;
+
+            int minuteTens = digit(text.charAt(j + 1));
+            int minuteOnes = digit(text.charAt(j + 2));
+            if (minuteTens < 0 || minuteTens > 5 || minuteOnes < 0)
+                continue;
+            j += 3;
+            if (j < length && (digit(text.charAt(j)) >= 0 || (separator == '.' && text.charAt(j) == '.')))
+                continue;
+
+            hour = applyAmPm(text, j, hour);
+            int time = hour * 60 + minuteTens * 10 + minuteOnes;
+            if (colon)
+                return time;
+            if (fallback == NO_TIME)
+                fallback = time;
+            i = j - 1;
+        }
+        return fallback;
+    }
+
+    /**
+     * Converts a 12h hour to 24h if the time at {@code start} is followed by "AM", "pm", "a.m." etc.
+     */
+    private static int applyAmPm(CharSequence text, int start, int hour) {
+        if (hour < 1 || hour > 12)
+            return hour;
+
+        final int length = text.length();
+        int i = start;
+        while (i < length && isSpace(text.charAt(i)))
+            i++;
+        if (i >= length)
+            return hour;
+
+        char c = text.charAt(i);
+        boolean pm;
+        if (c == 'a' || c == 'A')
+            pm = false;
+        else if (c == 'p' || c == 'P')
+            pm = true;
+        else
+            return hour;
+
+        i++;
+        if (i < length && text.charAt(i) == '.')
+            i++;
+        if (i >= length || (text.charAt(i) != 'm' && text.charAt(i) != 'M'))
+            return hour;
+        i++;
+        if (i < length && Character.isLetter(text.charAt(i)))
+            return hour;
+
+        return pm ? hour % 12 + 12 : hour % 12;
+    }
+
+    private static int digit(char c) {
+        if (c >= '0' && c <= '9')
+            return c - '0';
+        if (c < 0x80)
+            return -1;
+        return Character.digit(c, 10);
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\u00A0' || c == '\u202F' || Character.isWhitespace(c);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cz.babi.android.xposed.dynamicalarmicon2;
+
+import android.content.Context;
+import android.provider.Settings;
+import android.text.format.DateFormat;
+
+import java.io.PrintWriter;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import static de.robv.android.xposed.XposedHelpers.findClass;
+import static de.robv.android.xposed.XposedHelpers.findField;
+import static de.robv.android.xposed.XposedHelpers.findMethodBestMatch;
+
+/**
+ * Writes Timely's next alarm to Settings.System.NEXT_ALARM_FORMATTED, which Timely itself only does
+ * on Android 4.1 and less.
+ * <p/>
+ * Timely calls AlarmManager.f(…) far more often than its next alarm changes, and each write goes
+ * through the settings provider and wakes SystemUI's observer. So the value is only written when it
+ * changed, and writes that were skipped are counted, see {@link #dump(PrintWriter)}. Timely's
+ * obfuscated classes and methods are looked up once. Only used from the thread Timely calls f(…) on.
+ */
+class TimelyAlarmWriter {
+    private final ClassLoader mClassLoader;
+    private Field mContextField;
+    private Method mNextAlarmMethod;
+    private Method mToLocalMethod;
+    private Method mMillisMethod;
+
+    /* The last formatted alarm, reused while the alarm and the 24 hour setting don't change. */
+    private long mFormattedMillis = Long.MIN_VALUE;
+    private boolean mFormatted24Hour;
+    private String mFormatted;
+    /* Null until the first write. */
+    private String mWritten;
+    private int mWrites;
+    private int mSuppressed;
+
+    TimelyAlarmWriter(ClassLoader classLoader) {
+        mClassLoader = classLoader;
+    }
+
+    /**
+     * @param alarmManager Timely's AlarmManager.
+     * @param alarmClock   Timely's next AlarmClock, or null if there's none.
+     */
+    void update(Object alarmManager, Object alarmClock) throws Throwable {
+        Context context = getContext(alarmManager);
+
+        String nextAlarmFormatted = "";
+        if (alarmClock != null) {
+            if (mNextAlarmMethod == null)
+                mNextAlarmMethod = findMethodBestMatch(findClass("ch.bitspin.timely.alarm.e", mClassLoader), "a",
+                        alarmClock);
+            Object nextAlarmUTC = invoke(mNextAlarmMethod, null, alarmClock);
+            if (nextAlarmUTC != null) {
+                if (mToLocalMethod == null)
+                    mToLocalMethod = findMethodBestMatch(nextAlarmUTC.getClass(), "c", (Object) null);
+                Object nextAlarmLocal = invoke(mToLocalMethod, nextAlarmUTC, (Object) null);
+                if (mMillisMethod == null)
+                    mMillisMethod = findMethodBestMatch(nextAlarmLocal.getClass(), "d");
+                nextAlarmFormatted = format(context, (Long) invoke(mMillisMethod, nextAlarmLocal));
+            }
+        }
+
+        if (nextAlarmFormatted.equals(mWritten)) {
+            mSuppressed++;
+            return;
+        }
+        Settings.System.putString(context.getContentResolver(), Settings.System.NEXT_ALARM_FORMATTED,
+                nextAlarmFormatted);
+        mWritten = nextAlarmFormatted;
+        mWrites++;
+    }
+
+    void dump(PrintWriter writer) {
+        writer.println("Timely next alarm writes: " + mWrites + ", unchanged writes suppressed: " + mSuppressed);
+    }
+
+    Context getContext(Object alarmManager) throws IllegalAccessException {
+        if (mContextField == null)
+            mContextField = findField(alarmManager.getClass(), "e");
+        return (Context) mContextField.get(alarmManager);
+    }
+
+    private String format(Context context, long millis) {
+        boolean is24Hour = DateFormat.is24HourFormat(context);
+        if (millis != mFormattedMillis || is24Hour != mFormatted24Hour || mFormatted == null) {
+            String timeFormat = is24Hour ? "E kk:mm" : "E h:mm aa";
+            mFormatted = DateFormat.format(timeFormat, millis).toString();
+            mFormattedMillis = millis;
+            mFormatted24Hour = is24Hour;
+        }
+        return mFormatted;
+    }
+
+    private static Object invoke(Method method, Object receiver, Object... args) throws Throwable {
+        try {
+            return method.invoke(receiver, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
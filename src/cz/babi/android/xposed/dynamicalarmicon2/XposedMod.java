@@ -21,34 +21,40 @@ import android.annotation.TargetApi;
 import android.app.AlarmManager;
 import android.app.Notification;
 import android.content.BroadcastReceiver;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.database.ContentObserver;
 import android.graphics.Bitmap;
-import android.graphics.Canvas;
 import android.graphics.PorterDuff;
 import android.net.Uri;
 import android.os.*;
 import android.provider.Settings;
 import android.service.notification.StatusBarNotification;
-import android.text.TextUtils;
-import android.text.format.DateFormat;
-import android.util.Pair;
 import android.view.View;
 import android.widget.*;
+import com.germainz.dynamicalarmicon.AndroidTraceSink;
 import com.germainz.dynamicalarmicon.ClockDrawable;
+import com.germainz.dynamicalarmicon.ClockFaceAtlas;
+import com.germainz.dynamicalarmicon.ClockFaceAtlasFile;
+import com.germainz.dynamicalarmicon.ClockState;
 import com.germainz.dynamicalarmicon.Config;
-import com.germainz.dynamicalarmicon.TouchWizClockDrawable;
+import com.germainz.dynamicalarmicon.ConfigSnapshot;
+import com.germainz.dynamicalarmicon.HookTrace;
+import com.germainz.dynamicalarmicon.LargeIconCache;
 import de.robv.android.xposed.IXposedHookLoadPackage;
-import de.robv.android.xposed.XC_MethodHook;
 import de.robv.android.xposed.XposedBridge;
 import de.robv.android.xposed.callbacks.XC_LoadPackage;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static de.robv.android.xposed.XposedHelpers.*;
 
@@ -62,21 +68,52 @@ public class XposedMod implements IXposedHookLoadPackage {
     private ClockDrawable mClockDrawableStatusbar;
     private ContentObserver mNextAlarmObserver;
     private BroadcastReceiver mNextAlarmChangedReceiver;
+    /* Registered in makeStatusBarView, unregistered when the status bar is destroyed. */
+    private BroadcastReceiver mStartUpReceiver;
+    private BroadcastReceiver mTimeChangedReceiver;
+    private BroadcastReceiver mConfigReceiver;
+    private BroadcastReceiver mStatsReceiver;
+    private BroadcastReceiver mTraceReceiver;
+    private ComponentCallbacks2 mComponentCallbacks;
     private AlarmManager mAlarmManager;
-    private Config mConfig = new Config();
-    private static final Set<String> CLOCK_PACKAGES = new HashSet<>(Arrays.asList(new String[]{
-    "com.android.deskclock", "com.google.android.deskclock", "com.mobitobi.android.gentlealarmtrial",
-    "com.mobitobi.android.gentlealarm"
-    }));
-    private static final Pattern TIME_PATTERN = Pattern.compile("([01]?[0-9]|2[0-3]):([0-5][0-9])");
+    private AlarmUpdateScheduler mAlarmUpdateScheduler;
+    private AlarmIconIndex mAlarmIconIndex;
+    private HookRegistry mHooks;
+    private final HookStats mStats = new HookStats();
+    private final AlarmTimeResolver mAlarmTimeResolver = new AlarmTimeResolver();
+    /* Last time shown by the status bar icon, packed as by TimeScanner. */
+    private int mAlarmTime = TimeScanner.NO_TIME;
+    /* Read on first use, see getConfig(). */
+    private Config mConfig;
+    private SystemUIFields mFields;
+    private RemoteViewsTextExtractor mTextExtractor;
+    private LargeIconCache mLargeIconCache;
+    private LargeIconRenderer mLargeIconRenderer;
+    /* Shared by the status bar and header drawables, so the next alarm is only set once. */
+    private ClockState mAlarmClock;
+    /* Notification icons, one state per time shown. Settings changes are applied to them in place. */
+    private final Map<Integer, ClockState> mNotificationClocks = new HashMap<Integer, ClockState>();
+    /* Compiled from the clock packages setting, see getClockPackages(). */
+    private ClockPackageRules mClockPackages;
+    /* View ids of the VIEW rules given by name, by package, resolved on first use. NO_VIEW_ID if the
+     * app or the id doesn't exist, so the lookup isn't retried for every notification. */
+    private final Map<String, Integer> mViewIds = new HashMap<String, Integer>();
+    /* The time shown by each clock notification's entry and, on Marshmallow, icon view. */
+    private final AlarmTimeStore mAlarmTimes = new AlarmTimeStore();
+    private final NotificationTimeCache mTimeCache = new NotificationTimeCache(NotificationTimeCache.DEFAULT_SIZE);
     private static final String START_UP_INTENT = "com.germainz.dynamicalarmicon.START_UP";
-    private static final int CLOCK_STYLE_AOSP = 0;
-    private static final int CLOCK_STYLE_TOUCHWIZ = 1;
+    private static final String STATS_FILE = "dynamicalarmicon-stats.txt";
+    /* Same as View.NO_ID, which no view's id is. */
+    private static final int NO_VIEW_ID = -1;
 
     private static final int StatusbarNotificationIdx = Config.IS_LOLLIPOP_OR_ABOVE ? 0 : 1;
     private static final int StatusBarIconViewIdx = Config.IS_LOLLIPOP_OR_ABOVE ? 1 : 2;
 
+    /* 0 until first used, see getStatusbarIconHeight() and getStatusbarHeaderIconSize(). */
     private int statusbarIconHeight, statusbarHeaderIconSize;
+    private final StartupProfile mStartup = new StartupProfile();
+    private boolean mDeferredHooksInstalled;
+    private boolean mStartupLogged;
 
     @Override
     public void handleLoadPackage(final XC_LoadPackage.LoadPackageParam lpparam) throws Throwable {
@@ -90,75 +127,171 @@ public class XposedMod implements IXposedHookLoadPackage {
     }
 
     private void hookSystemUI(final XC_LoadPackage.LoadPackageParam lpparam) {
-        final ClassLoader classLoader = lpparam.classLoader;
+        long startNanos = System.nanoTime();
+        final HookRegistry hooks = new HookRegistry(lpparam.classLoader);
+        mHooks = hooks;
+
+        /* Only the status bar's entry points are hooked while SystemUI loads. The other hooks are
+         * installed once it starts building its status bar, before any notification or icon is added,
+         * and the config and display metrics are only read when first needed. */
+        hooks.hookMethod("com.android.systemui.statusbar.phone.PhoneStatusBar", "makeStatusBarView",
+                new MeasuredHook(mStats, HookStats.MAKE_STATUS_BAR_VIEW) {
+                    @Override
+                    protected void before(MethodHookParam param) throws Throwable {
+                        installDeferredHooks(lpparam.classLoader);
+                    }
+
+                    @Override
+                    protected void after(final MethodHookParam param) throws Throwable {
+                        // The deferred hooks failed, see the log.
+                        if (mFields == null)
+                            return;
+                        mContext = mFields.getContext(param.thisObject);
+                        ClockFaceAtlas.setMemoryBudget(mContext);
+                        mAlarmUpdateScheduler = new AlarmUpdateScheduler(new Runnable() {
+                            @Override
+                            public void run() {
+                                updateAlarmIcon(param.thisObject);
+                            }
+                        }, AlarmUpdateScheduler.DEFAULT_WINDOW_MS);
+                        /* Beginning with Android Lollipop NEXT_ALARM_FORMATTED has been depreciated
+                         * instead we need to register a broadcast receiver to receive an intent
+                         * with action ACTION_NEXT_ALARM_CLOCK_CHANGED
+                         */
+                        if (Config.IS_LOLLIPOP_OR_ABOVE) {
+                            mNextAlarmChangedReceiver = new BroadcastReceiver() {
+                                @Override
+                                public void onReceive(Context context, Intent intent) {
+                                    mAlarmUpdateScheduler.schedule();
+                                }
+                            };
+                            mContext.registerReceiver(mNextAlarmChangedReceiver, new IntentFilter(AlarmManager.ACTION_NEXT_ALARM_CLOCK_CHANGED));
+                        } else {
+                            Uri nextAlarmUri = Settings.System.getUriFor(Settings.System.NEXT_ALARM_FORMATTED);
+                            mNextAlarmObserver = new ContentObserver(new Handler()) {
+                                @Override
+                                public void onChange(boolean selfChange) {
+                                    mAlarmUpdateScheduler.schedule();
+                                }
+                            };
+                            mContext.getContentResolver().registerContentObserver(nextAlarmUri, false, mNextAlarmObserver);
+                        }
+
+                        // Only needed on start up.
+                        mStartUpReceiver = new BroadcastReceiver() {
+                            @Override
+                            public void onReceive(Context context, Intent intent) {
+                                mAlarmUpdateScheduler.schedule();
+                                mContext.unregisterReceiver(this);
+                                mStartUpReceiver = null;
+                            }
+                        };
+                        mContext.registerReceiver(mStartUpReceiver, new IntentFilter(START_UP_INTENT));
+
+                        // The shown time depends on the time zone.
+                        IntentFilter timeFilter = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
+                        timeFilter.addAction(Intent.ACTION_TIME_CHANGED);
+                        mTimeChangedReceiver = new BroadcastReceiver() {
+                            @Override
+                            public void onReceive(Context context, Intent intent) {
+                                mAlarmTimeResolver.invalidate();
+                                mAlarmUpdateScheduler.schedule();
+                            }
+                        };
+                        mContext.registerReceiver(mTimeChangedReceiver, timeFilter);
+
+                        mConfigReceiver = new BroadcastReceiver() {
+                            @Override
+                            public void onReceive(Context context, Intent intent) {
+                                if (getConfig().update(intent))
+                                    applyConfig();
+                            }
+                        };
+                        mContext.registerReceiver(mConfigReceiver, new IntentFilter(Config.ACTION_CONFIG_CHANGED),
+                                Config.PERMISSION_CHANGE_CONFIG, null);
+
+                        mStatsReceiver = registerStatsReceiver(mContext, null);
+                        mTraceReceiver = registerTraceReceiver(mContext);
+
+                        mComponentCallbacks = new ComponentCallbacks2() {
+                            @Override
+                            public void onTrimMemory(int level) {
+                                if (mLargeIconCache != null)
+                                    mLargeIconCache.onTrimMemory(level);
+                            }
+
+                            @Override
+                            public void onLowMemory() {
+                                if (mLargeIconCache != null)
+                                    mLargeIconCache.onTrimMemory(TRIM_MEMORY_COMPLETE);
+                            }
 
-        statusbarIconHeight = Math.round(20 * Resources.getSystem().getDisplayMetrics().density);
-        statusbarHeaderIconSize = Math.round(18 * Resources.getSystem().getDisplayMetrics().density);
+                            @Override
+                            public void onConfigurationChanged(Configuration newConfig) {
+                            }
+                        };
+                        mContext.registerComponentCallbacks(mComponentCallbacks);
+
+                        if (!mStartupLogged) {
+                            mStartup.log();
+                            mStartupLogged = true;
+                        }
+                    }
+                }
+        );
+
+        hooks.hookAllConstructors("com.android.systemui.statusbar.phone.PhoneStatusBarPolicy",
+                new MeasuredHook(mStats, HookStats.STATUS_BAR_POLICY) {
+                    @Override
+                    protected void after(MethodHookParam param) throws Throwable {
+                        // For when the device first starts up.
+                        ((Context) param.args[0]).sendBroadcast(new Intent(START_UP_INTENT));
+                    }
+                }
+        );
+
+        mStartup.record(StartupProfile.EAGER_HOOKS, startNanos);
+    }
 
-        Object statusBarNotificationClass;
+    private void installDeferredHooks(ClassLoader classLoader) {
+        // Only marked as installed at the end, so a failure is retried on the next call. Hooks that
+        // were already installed are refused by the registry then.
+        if (mDeferredHooksInstalled)
+            return;
+        final HookRegistry hooks = mHooks;
+
+        long startNanos = System.nanoTime();
+        Class<?> statusBarNotificationClass;
         if(Config.IS_JELLYBEANMR2_OR_ABOVE) {
             statusBarNotificationClass = StatusBarNotification.class;
         } else {
-            statusBarNotificationClass = "com.android.internal.statusbar.StatusBarNotification";
+            statusBarNotificationClass = findClass("com.android.internal.statusbar.StatusBarNotification",
+                    classLoader);
         }
+        SystemUIFields fields = new SystemUIFields(classLoader, statusBarNotificationClass);
+        mAlarmIconIndex = new AlarmIconIndex(fields);
+        mFields = fields;
+        mStartup.record(StartupProfile.FIELDS, startNanos);
 
-        XC_MethodHook notificationDataEntryHook = new XC_MethodHook() {
+        startNanos = System.nanoTime();
+        MeasuredHook notificationDataEntryHook = new MeasuredHook(mStats, HookStats.ENTRY) {
             @Override
-            protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
+            protected void before(MethodHookParam param) throws Throwable {
                 Object notificationObject = param.args[StatusbarNotificationIdx];
-                final String packageName = (String) getObjectField(notificationObject, "pkg");
-                if(!CLOCK_PACKAGES.contains(packageName))
+                ClockPackageRules.Rule rule = getClockPackages().find(mFields.getPackage(notificationObject));
+                if (rule == null)
                     return;
 
-                Notification notification = (Notification) getObjectField(notificationObject, "notification");
-                RemoteViews contentView = notification.contentView;
-
-                List<CharSequence> notificationText = new ArrayList<CharSequence>();
-                ArrayList<Parcelable> actions = (ArrayList<Parcelable>) getObjectField(contentView, "mActions");
-                for (Parcelable parcelable : actions) {
-                    Parcel parcel = Parcel.obtain();
-                    parcelable.writeToParcel(parcel, 0);
-                    parcel.setDataPosition(0);
-                    /* RemoteViews.setTextViewText(…) adds a ReflectionAction action:
-                     *   ReflectionAction(int viewId, String methodName, CharSequence value)
-                     * ReflectionAction writes, in order, the following values to the parcelable:
-                     *   int TAG: 2 for ReflectionAction.
-                     *   int viewId: the view's ID, we don't need that.
-                     *   String methodName: "setText".
-                     *   int type: CHAR_SEQUENCE = 10, but we don't need to check it since it's always 10
-                     *             with setText.
-                     *   CharSequence value: the text we want, written using TextUtils.writeToParcel(…)
-                     */
-
-                    // Check if it's a ReflectionAction.
-                    if (parcel.readInt() != 2) {
-                        continue;
-                    }
-
-                    parcel.readInt(); // discard the viewId.
-                    // Check if methodName = "setText"
-                    if (parcel.readString().equals("setText")) {
-                        parcel.readInt(); // discard type.
-                        // Get value.
-                        notificationText.add(TextUtils.CHAR_SEQUENCE_CREATOR.createFromParcel(parcel));
-                    }
-                    parcel.recycle();
-                }
-
-                Pair<Integer, Integer> alarmTime = null;
-                for (CharSequence txt : notificationText) {
-                    // The time should be in the notification's text, not title.
-                    alarmTime = getTimeFromString(String.valueOf(txt));
-                    if (alarmTime != null) {
-                        break;
-                    }
-                }
+                final Notification notification = mFields.getNotification(notificationObject);
+                ImageView icon = (ImageView) param.args[StatusBarIconViewIdx];
+                int alarmTime = findAlarmTime(rule, notificationObject, notification, icon.getContext());
 
-                if (alarmTime == null) return;
+                if (alarmTime == TimeScanner.NO_TIME) return;
+                int hour = TimeScanner.getHour(alarmTime);
+                int minute = TimeScanner.getMinute(alarmTime);
 
                 // Set the small icon.
-                ImageView icon = (ImageView) param.args[StatusBarIconViewIdx];
-                icon.setImageDrawable(getClockDrawable(alarmTime.first, alarmTime.second));
+                icon.setImageDrawable(getClockDrawable(hour, minute));
 
                 // Set the large icon (shown in the notification shade) for the normal views.
                 // The expanded view's large icon is set, if needed, in setBigContentView's hook.
@@ -167,70 +300,74 @@ public class XposedMod implements IXposedHookLoadPackage {
                 int height = (int) icon.getResources().getDimension(
                         android.R.dimen.notification_large_icon_height);
 
-                Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-                Canvas canvas = new Canvas(bitmap);
-                ClockDrawable clockDrawable = getClockDrawable(alarmTime.first, alarmTime.second);
-                clockDrawable.setBounds(0, 0, canvas.getWidth(), canvas.getHeight());
-                clockDrawable.draw(canvas);
-                contentView.setImageViewBitmap(android.R.id.icon, bitmap);
-
-                /* Workaround for expanded view. */
-                if(Config.IS_JELLYBEAN_OR_ABOVE) {
-                    @SuppressLint("NewApi") RemoteViews bigContentView = notification.bigContentView;
-                    bigContentView.setImageViewBitmap(android.R.id.icon, bitmap);
-                }
+                // Unless it's cached, a placeholder is shown until ours is rendered.
+                ConfigSnapshot config = getConfig().getSnapshot();
+                final Object entry = param.thisObject;
+                String key = mFields.getPackage(notificationObject) + ":" + mFields.getId(notificationObject);
+                Bitmap bitmap = getLargeIconRenderer().request(key, config.style, config.color, hour, minute,
+                        width, height, new LargeIconRenderer.Callback() {
+                            @Override
+                            public void onRendered(Bitmap bitmap) {
+                                setLargeIcon(notification, bitmap);
+                                // Already inflated by now, unless SystemUI does it later.
+                                setIconBitmap(mFields.getExpanded(entry), bitmap);
+                                setIconBitmap(mFields.getExpandedBig(entry), bitmap);
+                            }
+                        });
+                if (bitmap == null)
+                    bitmap = mLargeIconCache.getPlaceholder(config.style, config.color, hour, minute, width, height);
+                setLargeIcon(notification, bitmap);
 
-                setAdditionalInstanceField(param.thisObject, "hourLocal", alarmTime.first);
-                setAdditionalInstanceField(param.thisObject, "minuteLocal", alarmTime.second);
+                mAlarmTimes.put(param.thisObject, alarmTime);
 
                 /* Workaround for Notification icon shown in the notification shade.  */
                 if(Config.IS_MARSHMALLOW_OR_ABOVE) {
                     Object statusBarIconView = param.args[1];
 
-                    setAdditionalInstanceField(statusBarIconView, "hourLocal", alarmTime.first);
-                    setAdditionalInstanceField(statusBarIconView, "minuteLocal", alarmTime.second);
-
-                    findAndHookMethod("com.android.systemui.statusbar.StatusBarIconView", classLoader, "getIcon",
-                            "com.android.internal.statusbar.StatusBarIcon", new XC_MethodHook() {
-                                @Override
-                                protected void afterHookedMethod(MethodHookParam param) throws Throwable {
-                                    String pkg = (String) getObjectField(param.args[0], "pkg");
-                                    if(CLOCK_PACKAGES.contains(pkg)) {
-                                        Object hour = getAdditionalInstanceField(param.thisObject, "hourLocal");
-                                        Object minute = getAdditionalInstanceField(param.thisObject, "minuteLocal");
-                                        if(hour!=null && minute!=null)
-                                            param.setResult(getClockDrawable((int) hour, (int) minute));
-                                    }
-                                }
-                            });
-
+                    mAlarmTimes.put(statusBarIconView, alarmTime);
                 }
             }
         };
 
+        /* Marshmallow asks StatusBarIconView.getIcon(…) for the icon shown in the notification shade,
+         * so hand it the time stored by the entry hook above. Hooked once here, not per notification. */
+        if(Config.IS_MARSHMALLOW_OR_ABOVE) {
+            hooks.hookMethod("com.android.systemui.statusbar.StatusBarIconView", "getIcon",
+                    "com.android.internal.statusbar.StatusBarIcon", new MeasuredHook(mStats, HookStats.GET_ICON) {
+                        @Override
+                        protected void after(MethodHookParam param) throws Throwable {
+                            if(getClockPackages().find(mFields.getIconPackage(param.args[0])) != null) {
+                                int alarmTime = mAlarmTimes.get(param.thisObject);
+                                if(alarmTime != TimeScanner.NO_TIME)
+                                    param.setResult(getClockDrawable(TimeScanner.getHour(alarmTime),
+                                            TimeScanner.getMinute(alarmTime)));
+                            }
+                        }
+                    });
+        }
+
         if(Config.IS_MARSHMALLOW_OR_ABOVE) {
-            findAndHookConstructor("com.android.systemui.statusbar.NotificationData.Entry", classLoader,
+            hooks.hookConstructor("com.android.systemui.statusbar.NotificationData.Entry",
                     statusBarNotificationClass, "com.android.systemui.statusbar.StatusBarIconView", notificationDataEntryHook);
         } else if(Config.IS_LOLLIPOP_OR_ABOVE) {
-            findAndHookConstructor("com.android.systemui.statusbar.NotificationData.Entry", classLoader,
+            hooks.hookConstructor("com.android.systemui.statusbar.NotificationData.Entry",
                     statusBarNotificationClass, "com.android.systemui.statusbar.StatusBarIconView", notificationDataEntryHook);
         } else {
-            findAndHookConstructor("com.android.systemui.statusbar.NotificationData.Entry", classLoader,
+            hooks.hookConstructor("com.android.systemui.statusbar.NotificationData.Entry",
                     IBinder.class, statusBarNotificationClass, "com.android.systemui.statusbar.StatusBarIconView", notificationDataEntryHook);
         }
 
         if (Config.IS_JELLYBEAN_OR_ABOVE) {
-            XC_MethodHook notificationIconViewHook = new XC_MethodHook() {
+            MeasuredHook notificationIconViewHook = new MeasuredHook(mStats, HookStats.BIG_CONTENT_VIEW) {
                 @Override
-                protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
+                protected void before(MethodHookParam param) throws Throwable {
                     View bigContentView = (View) param.args[0];
                     if(bigContentView!=null) {
                         ImageView icon = (ImageView) bigContentView.findViewById(android.R.id.icon);
-                        Integer hour = (Integer) getAdditionalInstanceField(param.thisObject, "hourLocal");
-                        if(hour!=null) {
-                            Integer minute = (Integer) getAdditionalInstanceField(param.thisObject, "minuteLocal");
-                            icon.setImageDrawable(getClockDrawable(hour, minute));
-                        }
+                        int alarmTime = mAlarmTimes.get(param.thisObject);
+                        if(alarmTime != TimeScanner.NO_TIME)
+                            icon.setImageDrawable(getClockDrawable(TimeScanner.getHour(alarmTime),
+                                    TimeScanner.getMinute(alarmTime)));
                     }
                 }
             };
@@ -238,86 +375,72 @@ public class XposedMod implements IXposedHookLoadPackage {
             if(Config.IS_MARSHMALLOW_OR_ABOVE) {
                 /* For Marshmallow it is done directly within the constructor hook of NotificationData.Entry. */
             } else if(Config.IS_KITKAT_OR_ABOVE) {
-                findAndHookMethod("com.android.systemui.statusbar.NotificationData.Entry", classLoader,
+                hooks.hookMethod("com.android.systemui.statusbar.NotificationData.Entry",
                         "setBigContentView", View.class, notificationIconViewHook);
             } else {
-                findAndHookMethod("com.android.systemui.statusbar.NotificationData.Entry", classLoader,
+                hooks.hookMethod("com.android.systemui.statusbar.NotificationData.Entry",
                         "setLargeView", View.class, notificationIconViewHook);
             }
         }
 
-        findAndHookMethod("com.android.systemui.statusbar.phone.PhoneStatusBar", classLoader, "makeStatusBarView",
-                new XC_MethodHook() {
-                    @Override
-                    protected void afterHookedMethod(final MethodHookParam param) throws Throwable {
-                        mContext = (Context) getObjectField(param.thisObject, "mContext");
-                        /* Beginning with Android Lollipop NEXT_ALARM_FORMATTED has been depreciated
-                         * instead we need to register a broadcast receiver to receive an intent
-                         * with action ACTION_NEXT_ALARM_CLOCK_CHANGED
-                         */
-                        if (Config.IS_LOLLIPOP_OR_ABOVE) {
-                            mNextAlarmChangedReceiver = new BroadcastReceiver() {
-                                @Override
-                                public void onReceive(Context context, Intent intent) {
-                                    updateAlarmIcon(param.thisObject);
-                                }
-                            };
-                            mContext.registerReceiver(mNextAlarmChangedReceiver, new IntentFilter(AlarmManager.ACTION_NEXT_ALARM_CLOCK_CHANGED));
-                        } else {
-                            Uri nextAlarmUri = Settings.System.getUriFor(Settings.System.NEXT_ALARM_FORMATTED);
-                            mNextAlarmObserver = new ContentObserver(new Handler()) {
-                                @Override
-                                public void onChange(boolean selfChange) {
-                                    updateAlarmIcon(param.thisObject);
-                                }
-                            };
-                            mContext.getContentResolver().registerContentObserver(nextAlarmUri, false, mNextAlarmObserver);
-                        }
-
-                        // Only needed on start up.
-                        BroadcastReceiver startUpReceiver = new BroadcastReceiver() {
-                            @Override
-                            public void onReceive(Context context, Intent intent) {
-                                updateAlarmIcon(param.thisObject);
-                                mContext.unregisterReceiver(this);
-                            }
-                        };
-                        mContext.registerReceiver(startUpReceiver, new IntentFilter(START_UP_INTENT));
-                    }
-                }
-        );
-
         if (Config.IS_KITKAT_OR_ABOVE) {
-            findAndHookMethod("com.android.systemui.statusbar.phone.PhoneStatusBar", classLoader, "destroy",
-                    new XC_MethodHook() {
+            hooks.hookMethod("com.android.systemui.statusbar.phone.PhoneStatusBar", "destroy",
+                    new MeasuredHook(mStats, HookStats.DESTROY) {
                         @Override
-                        protected void afterHookedMethod(final MethodHookParam param) throws Throwable {
+                        protected void after(final MethodHookParam param) throws Throwable {
+                            mAlarmUpdateScheduler.cancel();
                             if (Config.IS_LOLLIPOP_OR_ABOVE) {
                                 mContext.unregisterReceiver(mNextAlarmChangedReceiver);
                             } else {
                                 mContext.getContentResolver().unregisterContentObserver(mNextAlarmObserver);
                             }
+                            // Already unregistered if it was received.
+                            if (mStartUpReceiver != null) {
+                                mContext.unregisterReceiver(mStartUpReceiver);
+                                mStartUpReceiver = null;
+                            }
+                            mContext.unregisterReceiver(mTimeChangedReceiver);
+                            mContext.unregisterReceiver(mConfigReceiver);
+                            mContext.unregisterReceiver(mStatsReceiver);
+                            mContext.unregisterReceiver(mTraceReceiver);
+                            mContext.unregisterComponentCallbacks(mComponentCallbacks);
                         }
                     }
             );
         }
 
-        XposedBridge.hookAllConstructors(findClass("com.android.systemui.statusbar.phone.PhoneStatusBarPolicy", classLoader),
-                new XC_MethodHook() {
+        /* Keep track of the alarm_clock icon view as it's added and removed. */
+        String iconControllerClass = Config.IS_MARSHMALLOW_OR_ABOVE
+                ? "com.android.systemui.statusbar.phone.StatusBarIconController"
+                : "com.android.systemui.statusbar.phone.PhoneStatusBar";
+        hooks.hookAllMethods(iconControllerClass, Config.IS_MARSHMALLOW_OR_ABOVE ? "addSystemIcon" : "addIcon",
+                new MeasuredHook(mStats, HookStats.ICON_ADDED) {
                     @Override
-                    protected void afterHookedMethod(MethodHookParam param) throws Throwable {
-                        // For when the device first starts up.
-                        ((Context) param.args[0]).sendBroadcast(new Intent(START_UP_INTENT));
+                    protected void after(MethodHookParam param) throws Throwable {
+                        String slot = (String) param.args[0];
+                        mAlarmIconIndex.onIconAdded(slot, mFields.getIconControllerStatusIcons(param.thisObject),
+                                (Integer) param.args[2]);
+                        // Give the new view the clock drawable.
+                        if (AlarmIconIndex.ALARM_SLOT.equals(slot) && mAlarmUpdateScheduler != null)
+                            mAlarmUpdateScheduler.schedule();
+                    }
+                }
+        );
+        hooks.hookAllMethods(iconControllerClass, Config.IS_MARSHMALLOW_OR_ABOVE ? "removeSystemIcon" : "removeIcon",
+                new MeasuredHook(mStats, HookStats.ICON_REMOVED) {
+                    @Override
+                    protected void after(MethodHookParam param) throws Throwable {
+                        mAlarmIconIndex.onIconRemoved((String) param.args[0]);
                     }
                 }
         );
 
         if(Config.IS_JELLYBEANMR2_OR_ABOVE) {
-            findAndHookMethod("com.android.systemui.statusbar.StatusBarIconView", classLoader, "updateDrawable",
-                    boolean.class, new XC_MethodHook() {
+            hooks.hookMethod("com.android.systemui.statusbar.StatusBarIconView", "updateDrawable",
+                    boolean.class, new MeasuredHook(mStats, HookStats.UPDATE_DRAWABLE) {
                         @Override
-                        protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
-                            String slot = (String)getObjectField(param.thisObject, "mSlot");
+                        protected void before(MethodHookParam param) throws Throwable {
+                            String slot = mFields.getSlot(param.thisObject);
                             if(slot!=null && slot.equals("alarm_clock")) {
                                 param.setResult(true);
                             }
@@ -326,72 +449,62 @@ public class XposedMod implements IXposedHookLoadPackage {
             );
         }
 
-        if (Config.IS_LOLLIPOP_OR_ABOVE) {
+        if (Config.IS_LOLLIPOP_OR_ABOVE && mFields.hasAlarmStatus()) {
             /* Set the alarm clock drawable in the expanded status bar */
-            findAndHookMethod("com.android.systemui.statusbar.phone.StatusBarHeaderView", classLoader, "onNextAlarmChanged",
-                    AlarmManager.AlarmClockInfo.class, new XC_MethodHook() {
+            hooks.hookMethod("com.android.systemui.statusbar.phone.StatusBarHeaderView", "onNextAlarmChanged",
+                    AlarmManager.AlarmClockInfo.class, new MeasuredHook(mStats, HookStats.NEXT_ALARM_CHANGED) {
                         @Override
-                        protected void afterHookedMethod(MethodHookParam param) throws Throwable {
+                        protected void after(MethodHookParam param) throws Throwable {
                             if (param.args[0] != null) {
                                 if (mClockDrawableStatusbar == null) {
-                                    mClockDrawableStatusbar = getClockDrawable(0, 0);
+                                    mClockDrawableStatusbar = getAlarmClock().newDrawable();
                                 }
 
-                                TextView mAlarmStatus = (TextView) getObjectField(param.thisObject, "mAlarmStatus");
+                                TextView mAlarmStatus = mFields.getAlarmStatus(param.thisObject);
                                 mClockDrawableStatusbar.setColorFilter(mAlarmStatus.getCurrentTextColor(), PorterDuff.Mode.MULTIPLY);
-                                mClockDrawableStatusbar.setBounds(0, 0, statusbarHeaderIconSize, statusbarHeaderIconSize);
+                                mClockDrawableStatusbar.setBounds(0, 0, getStatusbarHeaderIconSize(), getStatusbarHeaderIconSize());
                                 mAlarmStatus.setCompoundDrawables(mClockDrawableStatusbar, null, null, null);
                             }
                         }
                     }
             );
         }
+
+        mStartup.record(StartupProfile.DEFERRED_HOOKS, startNanos);
+        mDeferredHooksInstalled = true;
     }
 
     private void hookTimely(final XC_LoadPackage.LoadPackageParam lpparam) {
         final ClassLoader classLoader = lpparam.classLoader;
+        HookRegistry hooks = new HookRegistry(classLoader);
+        mHooks = hooks;
+        final TimelyAlarmWriter alarmWriter = new TimelyAlarmWriter(classLoader);
+
+        hooks.hookMethod("ch.bitspin.timely.alarm.AlarmManager", "f", "ch.bitspin.timely.data.AlarmClock",
+                new MeasuredHook(mStats, HookStats.TIMELY_NEXT_ALARM) {
+                    private boolean mReceiversRegistered;
 
-        findAndHookMethod("ch.bitspin.timely.alarm.AlarmManager", classLoader, "f", "ch.bitspin.timely.data.AlarmClock",
-                new XC_MethodHook() {
                     @Override
-                    protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
-                        // Timely actually does this for Android 4.1 and less, but not for 4.2 and higher.
-                        String nextAlarmFormatted = "";
-                        Context context = (Context) getObjectField(param.thisObject, "e");
-                        Object alarmClock = param.args[0];
-                        if (alarmClock != null) {
-                            Object nextAlarmUTC = callStaticMethod(findClass("ch.bitspin.timely.alarm.e", classLoader),
-                                    "a", alarmClock);
-                            if (nextAlarmUTC != null) {
-                                Object nextAlarmLocal = callMethod(nextAlarmUTC, "c", (Object) null);
-                                String timeFormat = "E kk:mm";
-                                if (!DateFormat.is24HourFormat(context))
-                                    timeFormat = "E h:mm aa";
-                                nextAlarmFormatted = (String) DateFormat.format(timeFormat,
-                                        (Long) callMethod(nextAlarmLocal, "d"));
-                            }
+                    protected void before(MethodHookParam param) throws Throwable {
+                        if (!mReceiversRegistered) {
+                            Context context = alarmWriter.getContext(param.thisObject).getApplicationContext();
+                            registerStatsReceiver(context, alarmWriter);
+                            registerTraceReceiver(context);
+                            mReceiversRegistered = true;
                         }
-                        Settings.System.putString(context.getContentResolver(),
-                                Settings.System.NEXT_ALARM_FORMATTED, nextAlarmFormatted);
+                        // Timely actually does this for Android 4.1 and less, but not for 4.2 and higher.
+                        alarmWriter.update(param.thisObject, param.args[0]);
                     }
                 }
         );
     }
 
-    private Pair<Integer, Integer> getTimeFromString(String s) {
-        Matcher matcher = TIME_PATTERN.matcher(s);
-        if (matcher.find()) {
-            String[] nextAlarmTime = TextUtils.split(matcher.group(), ":");
-            int nextAlarmHour = Integer.parseInt(nextAlarmTime[0]);
-            int nextAlarmMinute = Integer.parseInt(nextAlarmTime[1]);
-            return new Pair<>(nextAlarmHour, nextAlarmMinute);
-        }
-        return null;
-    }
-
     @TargetApi(Build.VERSION_CODES.LOLLIPOP)
     private void updateAlarmIcon(Object thisObject) {
-        int hour, minute;
+        if (getConfig().reloadIfChanged())
+            applyConfig();
+
+        int alarmTime;
         if (Config.IS_LOLLIPOP_OR_ABOVE) {
             if (mAlarmManager == null) {
                 mAlarmManager = (AlarmManager) mContext.getSystemService(Context.ALARM_SERVICE);
@@ -399,10 +512,7 @@ public class XposedMod implements IXposedHookLoadPackage {
             AlarmManager.AlarmClockInfo mNextAlarm = mAlarmManager.getNextAlarmClock();
             if (mNextAlarm == null) return;
 
-            Calendar calendar = GregorianCalendar.getInstance();
-            calendar.setTime(new Date(mNextAlarm.getTriggerTime()));
-            hour = calendar.get(Calendar.HOUR);
-            minute = calendar.get(Calendar.MINUTE);
+            alarmTime = mAlarmTimeResolver.resolve(mNextAlarm.getTriggerTime());
         } else {
             String nextAlarm = Settings.System.getString(mContext.getContentResolver(), Settings.System.NEXT_ALARM_FORMATTED);
             if (nextAlarm.isEmpty()) {
@@ -411,62 +521,300 @@ public class XposedMod implements IXposedHookLoadPackage {
              * updateAlarmIcon next time an alarm is set.
              */
                 mClockDrawable = null;
+                mAlarmTime = TimeScanner.NO_TIME;
                 return;
             }
 
-            Pair<Integer, Integer> nextAlarmTime = getTimeFromString(nextAlarm);
-            if (nextAlarmTime == null) return;
+            alarmTime = mAlarmTimeResolver.resolve(nextAlarm);
+            if (alarmTime == TimeScanner.NO_TIME) return;
+        }
 
-            hour = nextAlarmTime.first;
-            minute = nextAlarmTime.second;
+        ImageView alarmIcon = mAlarmIconIndex.get();
+        if (alarmTime == mAlarmTime && mClockDrawable != null && alarmIcon != null
+                && alarmIcon.getDrawable() == mClockDrawable) {
+            mAlarmUpdateScheduler.onUnchanged();
+            return;
         }
+        mAlarmTime = alarmTime;
+        int hour = TimeScanner.getHour(alarmTime);
+        int minute = TimeScanner.getMinute(alarmTime);
+        getAlarmClock().setTime(hour, minute);
 
-        if(mClockDrawable==null) {
+        if (alarmIcon == null) {
             /* https://github.com/android/platform_frameworks_base/commit/66ac133971f4e2f80cd7cfff89cc6f8a3f7e899f#diff-861aa855219bd25761dc6f44dfb97937 */
-            LinearLayout statusIcons;
-            if(Config.IS_MARSHMALLOW_OR_ABOVE) {
-                Object iconController = getObjectField(thisObject, "mIconController");
-                statusIcons = (LinearLayout)getObjectField(iconController, "mStatusIcons");
-            } else {
-                statusIcons = (LinearLayout) getObjectField(thisObject, "mStatusIcons");
+            alarmIcon = mAlarmIconIndex.rescan(mFields.getStatusIcons(thisObject));
+        }
+        if (alarmIcon != null && (mClockDrawable == null || alarmIcon.getDrawable() != mClockDrawable)) {
+            if (mClockDrawable == null)
+                mClockDrawable = mAlarmClock.newDrawable();
+            alarmIcon.setImageDrawable(mClockDrawable);
+
+            if(Config.IS_LOLLIPOP_OR_ABOVE) {
+                int width = mFields.getStatusIconWidth(thisObject);
+                if (width > 0)
+                    alarmIcon.getLayoutParams().width = width;
+                alarmIcon.getLayoutParams().height = getStatusbarIconHeight();
             }
+        }
+    }
 
-            for(int i = 0; i<statusIcons.getChildCount(); i++) {
-                ImageView alarm_clock = (ImageView) statusIcons.getChildAt(i);
-                if(getObjectField(alarm_clock, "mSlot").equals("alarm_clock")) {
-                    mClockDrawable = getClockDrawable(hour, minute);
-                    alarm_clock.setImageDrawable(mClockDrawable);
-
-                    if(Config.IS_LOLLIPOP_OR_ABOVE) {
-                        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                            Object iconController = getObjectField(thisObject, "mIconController");
-                            alarm_clock.getLayoutParams().width = getIntField(iconController, "mIconSize")+2*getIntField(iconController, "mIconHPadding");
-                        } else {
-                            alarm_clock.getLayoutParams().width = getIntField(thisObject, "mIconSize")+2*getIntField(thisObject, "mIconHPadding");
-                        }
-                        alarm_clock.getLayoutParams().height = statusbarIconHeight;
-                    }
+    /**
+     * Lets {@link HookStats} be switched and dumped with broadcasts, e.g.
+     * {@code adb shell am broadcast -a com.germainz.dynamicalarmicon.DUMP_STATS}.
+     *
+     * @param alarmWriter Timely's alarm writer when in Timely, else null.
+     */
+    private BroadcastReceiver registerStatsReceiver(final Context context, final TimelyAlarmWriter alarmWriter) {
+        IntentFilter statsFilter = new IntentFilter(HookStats.ACTION_RECORD);
+        statsFilter.addAction(HookStats.ACTION_DUMP);
+        BroadcastReceiver receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context receiverContext, Intent intent) {
+                if (HookStats.ACTION_DUMP.equals(intent.getAction())) {
+                    dumpStats(context, alarmWriter);
+                } else {
+                    boolean enabled = intent.getBooleanExtra(HookStats.EXTRA_ENABLED, true);
+                    if (enabled && !mStats.isEnabled())
+                        mStats.reset();
+                    mStats.setEnabled(enabled);
                 }
             }
-        } else {
-            mClockDrawable.setTime(hour, minute);
+        };
+        context.registerReceiver(receiver, statsFilter, HookStats.PERMISSION, null);
+        return receiver;
+    }
+
+    /**
+     * Lets {@link HookTrace} be switched with a broadcast, e.g.
+     * {@code adb shell am broadcast -a com.germainz.dynamicalarmicon.TRACE --ez enabled true}.
+     */
+    private static BroadcastReceiver registerTraceReceiver(Context context) {
+        BroadcastReceiver receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                AndroidTraceSink.setEnabled(intent.getBooleanExtra(AndroidTraceSink.EXTRA_ENABLED, true));
+            }
+        };
+        context.registerReceiver(receiver, new IntentFilter(AndroidTraceSink.ACTION_TRACE),
+                AndroidTraceSink.PERMISSION, null);
+        return receiver;
+    }
+
+    private ClockPackageRules getClockPackages() {
+        String source = getConfig().getSnapshot().clockPackages;
+        if (mClockPackages == null || (mClockPackages.getSource() != source && !mClockPackages.getSource().equals(source))) {
+            mClockPackages = ClockPackageRules.compile(source);
+            // Cached times and ids were found with the old rules.
+            mTimeCache.clear();
+            mViewIds.clear();
         }
+        return mClockPackages;
+    }
 
-        if (Config.IS_LOLLIPOP_OR_ABOVE) {
-            if (mClockDrawableStatusbar == null) {
-                mClockDrawableStatusbar = getClockDrawable(hour, minute);
+    /**
+     * @return the alarm time shown by the notification, packed as by TimeScanner.
+     */
+    @SuppressLint("NewApi")
+    private int findAlarmTime(ClockPackageRules.Rule rule, Object statusBarNotification, Notification notification,
+                              Context context) {
+        switch (rule.type) {
+            case ClockPackageRules.WHEN:
+                return notification.when != 0 ? mAlarmTimeResolver.resolve(notification.when) : TimeScanner.NO_TIME;
+            case ClockPackageRules.EXTRA:
+                if (!Config.IS_KITKAT_OR_ABOVE)
+                    return TimeScanner.NO_TIME;
+                return mAlarmTimeResolver.resolve(notification.extras.getCharSequence(rule.name));
+        }
+
+        // The other rules read the RemoteViews' actions.
+        if (notification.contentView == null)
+            return TimeScanner.NO_TIME;
+        List<?> actions = mFields.getActions(notification.contentView);
+        if (actions == null)
+            return TimeScanner.NO_TIME;
+
+        int viewId = RemoteViewsTextExtractor.ANY_VIEW;
+        if (rule.type == ClockPackageRules.VIEW) {
+            viewId = getViewId(rule, context);
+            if (viewId == NO_VIEW_ID)
+                return TimeScanner.NO_TIME;
+        }
+
+        RemoteViewsTextExtractor extractor = getTextExtractor();
+        int textCount = extractor.readTexts(actions, viewId);
+        try {
+            // Reposts with the same texts reuse the previous result.
+            int id = mFields.getId(statusBarNotification);
+            String tag = mFields.getTag(statusBarNotification);
+            int fingerprint = NotificationTimeCache.fingerprint(notification.contentView.getLayoutId());
+            for (int i = 0; i < textCount; i++)
+                fingerprint = NotificationTimeCache.addText(fingerprint, extractor.getText(i));
+            int time = mTimeCache.get(rule.packageName, id, tag, fingerprint);
+            if (time != NotificationTimeCache.MISS)
+                return time;
+
+            time = rule.type == ClockPackageRules.ACTION ? extractor.findTimeAt(rule.index) : extractor.findTime();
+            mTimeCache.put(rule.packageName, id, tag, fingerprint, time);
+            return time;
+        } finally {
+            extractor.clearTexts();
+        }
+    }
+
+    private int getViewId(ClockPackageRules.Rule rule, Context context) {
+        if (rule.viewId != 0)
+            return rule.viewId;
+        Integer viewId = mViewIds.get(rule.packageName);
+        if (viewId == null) {
+            viewId = resolveViewId(rule, context);
+            mViewIds.put(rule.packageName, viewId);
+        }
+        return viewId;
+    }
+
+    /**
+     * @return the id, or NO_VIEW_ID if the app or the id doesn't exist.
+     */
+    private static int resolveViewId(ClockPackageRules.Rule rule, Context context) {
+        try {
+            int id = context.getPackageManager().getResourcesForApplication(rule.packageName)
+                    .getIdentifier(rule.name, "id", rule.packageName);
+            return id != 0 ? id : NO_VIEW_ID;
+        } catch (PackageManager.NameNotFoundException e) {
+            return NO_VIEW_ID;
+        }
+    }
+
+    private static void setLargeIcon(Notification notification, Bitmap bitmap) {
+        if (notification.contentView != null)
+            notification.contentView.setImageViewBitmap(android.R.id.icon, bitmap);
+
+        /* Workaround for expanded view. */
+        if(Config.IS_JELLYBEAN_OR_ABOVE) {
+            @SuppressLint("NewApi") RemoteViews bigContentView = notification.bigContentView;
+            if (bigContentView != null)
+                bigContentView.setImageViewBitmap(android.R.id.icon, bitmap);
+        }
+    }
+
+    private static void setIconBitmap(View notificationView, Bitmap bitmap) {
+        if (notificationView == null)
+            return;
+        View icon = notificationView.findViewById(android.R.id.icon);
+        if (icon instanceof ImageView)
+            ((ImageView) icon).setImageBitmap(bitmap);
+    }
+
+    /**
+     * Writes the hook statistics and counters to the process' files directory.
+     *
+     * @param alarmWriter null in SystemUI. In Timely, its writes are dumped instead of the SystemUI
+     *                    caches and startup times.
+     */
+    private void dumpStats(Context context, TimelyAlarmWriter alarmWriter) {
+        File file = new File(context.getFilesDir(), STATS_FILE);
+        PrintWriter writer = null;
+        try {
+            writer = new PrintWriter(new FileWriter(file));
+            mStats.dump(writer);
+            writer.println();
+            mHooks.dump(writer);
+            writer.println();
+            if (alarmWriter != null) {
+                alarmWriter.dump(writer);
             } else {
-                mClockDrawableStatusbar.setTime(hour, minute);
+                mAlarmUpdateScheduler.dump(writer);
+                mAlarmIconIndex.dump(writer);
+                if (mLargeIconRenderer != null)
+                    mLargeIconRenderer.dump(writer);
+                mTimeCache.dump(writer);
+                mStartup.dump(writer);
             }
+            XposedBridge.log("DynamicAlarmIcon: stats written to " + file);
+        } catch (IOException e) {
+            XposedBridge.log("DynamicAlarmIcon: can't write " + file + ": " + e);
+        } finally {
+            if (writer != null)
+                writer.close();
         }
     }
 
+    private Config getConfig() {
+        if (mConfig == null) {
+            long startNanos = System.nanoTime();
+            mConfig = new Config();
+            mStartup.record(StartupProfile.CONFIG, startNanos);
+        }
+        return mConfig;
+    }
+
+    private int getStatusbarIconHeight() {
+        if (statusbarIconHeight == 0)
+            readIconSizes();
+        return statusbarIconHeight;
+    }
+
+    private int getStatusbarHeaderIconSize() {
+        if (statusbarHeaderIconSize == 0)
+            readIconSizes();
+        return statusbarHeaderIconSize;
+    }
+
+    private void readIconSizes() {
+        long startNanos = System.nanoTime();
+        float density = Resources.getSystem().getDisplayMetrics().density;
+        statusbarIconHeight = Math.round(ClockFaceAtlasFile.STATUS_BAR_ICON_DP * density);
+        statusbarHeaderIconSize = Math.round(ClockFaceAtlasFile.HEADER_ICON_DP * density);
+        mStartup.record(StartupProfile.METRICS, startNanos);
+    }
+
+    private RemoteViewsTextExtractor getTextExtractor() {
+        if (mTextExtractor == null) {
+            long startNanos = System.nanoTime();
+            mTextExtractor = new RemoteViewsTextExtractor();
+            mStartup.record(StartupProfile.TEXT_EXTRACTOR, startNanos);
+        }
+        return mTextExtractor;
+    }
+
+    private LargeIconRenderer getLargeIconRenderer() {
+        if (mLargeIconRenderer == null) {
+            long startNanos = System.nanoTime();
+            mLargeIconCache = new LargeIconCache(LargeIconCache.DEFAULT_MAX_BYTES);
+            mLargeIconRenderer = new LargeIconRenderer(mLargeIconCache);
+            mStartup.record(StartupProfile.LARGE_ICONS, startNanos);
+        }
+        return mLargeIconRenderer;
+    }
+
+    private ClockState getAlarmClock() {
+        if (mAlarmClock == null) {
+            ConfigSnapshot config = getConfig().getSnapshot();
+            mAlarmClock = new ClockState(config.style, config.color, 0, 0);
+        }
+        return mAlarmClock;
+    }
+
     private ClockDrawable getClockDrawable(int hour, int minute) {
-        int style = mConfig.getClockStyle();
-        int color = mConfig.getClockColor();
-        if (style == CLOCK_STYLE_AOSP)
-            return new ClockDrawable(color, hour, minute);
-        else
-            return new TouchWizClockDrawable(color, hour, minute);
+        Integer key = hour * 60 + minute;
+        ClockState clock = mNotificationClocks.get(key);
+        if (clock == null) {
+            ConfigSnapshot config = getConfig().getSnapshot();
+            clock = new ClockState(config.style, config.color, hour, minute);
+            mNotificationClocks.put(key, clock);
+        }
+        return clock.obtainDrawable();
+    }
+
+    private void applyConfig() {
+        ConfigSnapshot config = getConfig().getSnapshot();
+        if (mAlarmClock != null) {
+            mAlarmClock.setStyle(config.style);
+            mAlarmClock.setColor(config.color);
+        }
+        for (ClockState clock : mNotificationClocks.values()) {
+            clock.setStyle(config.style);
+            clock.setColor(config.color);
+        }
     }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.germainz.dynamicalarmicon;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Debug;
+
+import junit.framework.TestCase;
+
+/**
+ * ClockDrawable.draw(…) runs for every frame the status bar draws, so it must not allocate, whether
+ * it draws the paths or a face of the atlas. Counted with Debug's allocation counting, which only
+ * works on a device or an emulator.
+ */
+public class ClockDrawableAllocationTest extends TestCase {
+    private static final int SIZE = 60;
+    private static final int DRAWS = 5000;
+    private static final int[] STYLES = {Config.CLOCK_STYLE_AOSP, Config.CLOCK_STYLE_TOUCHWIZ};
+
+    private final Canvas mCanvas = new Canvas(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+
+    public void testDrawingPathsDoesNotAllocate() {
+        for (int style : STYLES) {
+            ClockDrawable drawable = new ClockDrawable(style, Color.WHITE, 10, 8);
+            drawable.mAtlasEnabled = false;
+            drawable.setBounds(0, 0, SIZE, SIZE);
+            assertEquals("style " + style, 0, countAllocations(drawable, true));
+        }
+    }
+
+    public void testDrawingAtlasFacesDoesNotAllocate() {
+        for (int style : STYLES) {
+            ClockDrawable drawable = new ClockDrawable(style, Color.WHITE, 10, 8);
+            drawable.setBounds(0, 0, SIZE, SIZE);
+            assertNotNull("style " + style, ClockFaceAtlas.obtain(style, SIZE, SIZE));
+            // Each minute is rendered into a slot when first drawn, which doesn't allocate either.
+            assertEquals("style " + style, 0, countAllocations(drawable, true));
+        }
+    }
+
+    /**
+     * @param changeTime whether to draw a different minute each time.
+     */
+    private int countAllocations(ClockDrawable drawable, boolean changeTime) {
+        // Class loading and the first uses of Canvas may allocate, so those aren't counted.
+        drawAll(drawable, changeTime, 100);
+        Debug.startAllocCounting();
+        try {
+            Debug.resetThreadAllocCount();
+            drawAll(drawable, changeTime, DRAWS);
+            return Debug.getThreadAllocCount();
+        } finally {
+            Debug.stopAllocCounting();
+        }
+    }
+
+    private void drawAll(ClockDrawable drawable, boolean changeTime, int draws) {
+        for (int i = 0; i < draws; i++) {
+            if (changeTime)
+                drawable.setTime(i / 60 % 24, i % 60);
+            drawable.draw(mCanvas);
+        }
+    }
+}
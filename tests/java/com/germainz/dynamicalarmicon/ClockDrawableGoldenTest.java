@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2014 GermainZ@xda-developers.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.germainz.dynamicalarmicon;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.test.InstrumentationTestCase;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Draws ClockDrawable over the goldens the headless ClockRasterizer is tested against (see
+ * headless/README.md), so the two can't drift apart. Skia's anti-aliasing isn't the rasterizer's
+ * supersampling, so edges may differ a little, but no part of the face may be missing or moved.
+ */
+public class ClockDrawableGoldenTest extends InstrumentationTestCase {
+    /* A pixel half covered in one and not at all in the other. A missing or moved part leaves pixels
+     * fully covered in one and empty in the other. */
+    private static final int MAX_DIFFERENCE = 128;
+    /* Over the whole face, catches strokes that are all a bit too thick or thin. */
+    private static final float MAX_MEAN_DIFFERENCE = 8;
+
+    public void testAospMatchesGoldens() throws IOException {
+        if (Config.IS_LOLLIPOP_OR_ABOVE) {
+            for (int size : new int[]{54, 60, 192})
+                assertMatchesGolden("aosp_" + size, Config.CLOCK_STYLE_AOSP, size);
+        } else {
+            // Drawn with the thin outline, which only has a 54 px golden.
+            assertMatchesGolden("aosp_thin_54", Config.CLOCK_STYLE_AOSP, 54);
+        }
+    }
+
+    public void testTouchWizMatchesGoldens() throws IOException {
+        for (int size : new int[]{54, 60, 192})
+            assertMatchesGolden("touchwiz_" + size, Config.CLOCK_STYLE_TOUCHWIZ, size);
+    }
+
+    private void assertMatchesGolden(String name, int style, int size) throws IOException {
+        Bitmap golden;
+        InputStream in = getInstrumentation().getContext().getAssets().open("goldens/" + name + ".png");
+        try {
+            golden = BitmapFactory.decodeStream(in);
+        } finally {
+            in.close();
+        }
+
+        // Same time and color as the goldens.
+        ClockDrawable drawable = new ClockDrawable(style, Color.WHITE, 10, 8);
+        drawable.mAtlasEnabled = false;
+        drawable.setBounds(0, 0, size, size);
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        drawable.draw(new Canvas(bitmap));
+
+        long total = 0;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int difference = Math.abs(Color.alpha(golden.getPixel(x, y)) - Color.alpha(bitmap.getPixel(x, y)));
+                assertTrue(name + " (" + x + ", " + y + "): " + difference, difference <= MAX_DIFFERENCE);
+                total += difference;
+            }
+        }
+        float mean = (float) total / (size * size);
+        assertTrue(name + " mean difference " + mean, mean <= MAX_MEAN_DIFFERENCE);
+    }
+}